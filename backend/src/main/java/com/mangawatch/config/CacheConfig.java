@@ -0,0 +1,73 @@
+package com.mangawatch.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caffeine caches behind the @Cacheable reads of MangaService. Each cache has its own Caffeine
+ * spec (cache.&lt;name&gt;.spec, e.g. "maximumSize=20000,expireAfterWrite=30m") and records hit
+ * statistics. All of them are emptied when an import batch commits; the TTLs only bound how
+ * stale they can get from writes that don't go through the importer.
+ * Only the caches named here exist; @Cacheable on any other name fails when called.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String GENRES = "genres";
+    public static final String MANGA_COUNT = "mangaCount";
+    public static final String MANGA_BY_ID = "mangaById";
+    public static final String MANGA_BY_DEX_ID = "mangaByDexId";
+
+    @Bean
+    public CacheManager cacheManager(
+            @Value("${cache.genres.spec:maximumSize=1,expireAfterWrite=1h}") String genres,
+            @Value("${cache.manga-count.spec:maximumSize=1,expireAfterWrite=5m}") String mangaCount,
+            @Value("${cache.manga-by-id.spec:maximumSize=20000,expireAfterWrite=30m}") String mangaById,
+            @Value("${cache.manga-by-dex-id.spec:maximumSize=20000,expireAfterWrite=30m}") String mangaByDexId) {
+        CaffeineCacheManager manager = new CaffeineCacheManager();
+        // an empty static list: no caches created on the fly for names not registered below
+        manager.setCacheNames(List.of());
+        register(manager, GENRES, genres);
+        register(manager, MANGA_COUNT, mangaCount);
+        register(manager, MANGA_BY_ID, mangaById);
+        register(manager, MANGA_BY_DEX_ID, mangaByDexId);
+        return manager;
+    }
+
+    private static void register(CaffeineCacheManager manager, String name, String spec) {
+        manager.registerCustomCache(name, Caffeine.from(spec).recordStats().build());
+    }
+
+    /**
+     * Hit ratio and size of every cache the manager holds, by name
+     */
+    public static Map<String, Object> stats(CacheManager manager) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        for (String name : manager.getCacheNames()) {
+            if (manager.getCache(name) instanceof CaffeineCache cache) {
+                CacheStats stats = cache.getNativeCache().stats();
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("entries", cache.getNativeCache().estimatedSize());
+                entry.put("hits", stats.hitCount());
+                entry.put("misses", stats.missCount());
+                entry.put("hitRatio", stats.hitRate());
+                entry.put("evictions", stats.evictionCount());
+                out.put(name, entry);
+            }
+        }
+        return out;
+    }
+}
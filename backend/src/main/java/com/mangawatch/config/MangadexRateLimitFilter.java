@@ -0,0 +1,128 @@
+package com.mangawatch.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+
+/**
+ * WebClient filter that keeps every MangaDex call under the shared rate budget.
+ *
+ * - each request takes a permit from a {@link TokenBucket} before it goes out
+ * - X-RateLimit-Remaining caps the bucket, and X-RateLimit-Retry-After / Retry-After
+ *   pause it, so all callers slow down together when MangaDex says so
+ * - 429, 5xx and connection failures are retried with jittered exponential backoff;
+ *   other errors (4xx, decode failures) are returned to the caller straight away
+ */
+public class MangadexRateLimitFilter implements ExchangeFilterFunction {
+
+    private static final Logger log = LoggerFactory.getLogger(MangadexRateLimitFilter.class);
+
+    // MangaDex sends an epoch-seconds timestamp here rather than a delay
+    static final String RATE_LIMIT_RETRY_AFTER = "X-RateLimit-Retry-After";
+    static final String RATE_LIMIT_REMAINING = "X-RateLimit-Remaining";
+
+    private final TokenBucket bucket;
+    private final int maxRetries;
+    private final Duration baseBackoff;
+
+    public MangadexRateLimitFilter(TokenBucket bucket, int maxRetries, Duration baseBackoff) {
+        this.bucket = bucket;
+        this.maxRetries = maxRetries;
+        this.baseBackoff = baseBackoff;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        return Mono.defer(() -> {
+                Duration wait = bucket.reserve();
+                Mono<ClientResponse> exchange = next.exchange(request);
+                return wait.isZero() ? exchange : Mono.delay(wait).then(exchange);
+            })
+            .flatMap(response -> {
+                applyRateLimitHeaders(response.statusCode(), response.headers().asHttpHeaders());
+                if (isRetryable(response.statusCode())) {
+                    // surface as the same exception retrieve() would, after freeing the connection
+                    return response.createException().flatMap(Mono::error);
+                }
+                return Mono.just(response);
+            })
+            .retryWhen(Retry.backoff(maxRetries, baseBackoff)
+                .maxBackoff(Duration.ofSeconds(30))
+                .jitter(0.5)
+                .filter(MangadexRateLimitFilter::isRetryable)
+                .doBeforeRetry(signal -> log.warn("MangaDex request {} failed ({}), retry {} of {}",
+                    request.url(), signal.failure().getMessage(), signal.totalRetries() + 1, maxRetries))
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+    }
+
+    private void applyRateLimitHeaders(HttpStatusCode status, HttpHeaders headers) {
+        Long retryAt = parseRetryAt(headers);
+
+        if (status.value() == 429) {
+            // without a hint, stop everyone for one backoff step; the retry adds its own delay on top
+            bucket.pauseUntil(retryAt != null ? retryAt : System.currentTimeMillis() + baseBackoff.toMillis());
+            log.warn("MangaDex rate limit hit, pausing requests until {}", retryAt != null ? retryAt : "backoff");
+            return;
+        }
+
+        String remaining = headers.getFirst(RATE_LIMIT_REMAINING);
+        if (remaining != null) {
+            try {
+                int left = Integer.parseInt(remaining.trim());
+                if (left <= 0 && retryAt != null) {
+                    bucket.pauseUntil(retryAt);
+                } else {
+                    bucket.limitAvailable(left);
+                }
+            } catch (NumberFormatException ignored) {
+                // malformed header, keep the configured rate
+            }
+        }
+    }
+
+    /**
+     * Epoch millis at which requests may resume, from either MangaDex's header or a standard Retry-After
+     */
+    private static Long parseRetryAt(HttpHeaders headers) {
+        String value = headers.getFirst(RATE_LIMIT_RETRY_AFTER);
+        if (value == null) {
+            value = headers.getFirst(HttpHeaders.RETRY_AFTER);
+        }
+        if (value == null) {
+            return null;
+        }
+        try {
+            long seconds = Long.parseLong(value.trim());
+            // large values are absolute timestamps, small ones are a delay
+            return seconds > 1_000_000_000L
+                ? seconds * 1000
+                : System.currentTimeMillis() + seconds * 1000;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean isRetryable(HttpStatusCode status) {
+        return status.value() == 429 || status.is5xxServerError();
+    }
+
+    private static boolean isRetryable(Throwable error) {
+        if (error instanceof WebClientResponseException responseError) {
+            return isRetryable(responseError.getStatusCode());
+        }
+        // connection refused/reset, response timeouts
+        return error instanceof WebClientRequestException;
+    }
+}
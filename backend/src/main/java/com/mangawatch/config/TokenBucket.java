@@ -0,0 +1,91 @@
+package com.mangawatch.config;
+
+import java.time.Duration;
+
+/**
+ * Thread-safe token bucket that hands out reservations instead of blocking.
+ *
+ * Callers ask for a permit and get back how long to wait before using it, so the
+ * bucket works for both blocking callers and reactive pipelines (Mono.delay).
+ * Reservations may drive the balance negative; later callers then queue up behind
+ * the debt at the configured rate.
+ *
+ * The bucket can also be paused until a point in time (e.g. a server's Retry-After)
+ * and have its balance capped when the server reports fewer remaining requests.
+ */
+public class TokenBucket {
+
+    private final double permitsPerNano;
+    private final double capacity;
+
+    private double tokens;
+    private long lastRefillNanos;
+    private long pausedUntilNanos;
+
+    public TokenBucket(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive");
+        }
+        this.permitsPerNano = permitsPerSecond / 1_000_000_000d;
+        this.capacity = Math.max(1, burst);
+        this.tokens = this.capacity;
+        this.lastRefillNanos = System.nanoTime();
+        this.pausedUntilNanos = this.lastRefillNanos;
+    }
+
+    /**
+     * Take one permit and return how long the caller must wait before using it.
+     */
+    public synchronized Duration reserve() {
+        long now = System.nanoTime();
+        refill(now);
+
+        tokens -= 1;
+        long debtWait = tokens >= 0 ? 0 : (long) Math.ceil(-tokens / permitsPerNano);
+        long pauseWait = Math.max(0, pausedUntilNanos - now);
+
+        return Duration.ofNanos(Math.max(debtWait, pauseWait));
+    }
+
+    /**
+     * Block the calling thread until a permit is available.
+     */
+    public void acquire() throws InterruptedException {
+        Duration wait = reserve();
+        if (!wait.isZero()) {
+            Thread.sleep(wait.toMillis(), (int) (wait.toNanosPart() % 1_000_000));
+        }
+    }
+
+    /**
+     * Hand out no permits until the given wall-clock time (epoch millis).
+     */
+    public synchronized void pauseUntil(long epochMillis) {
+        long delayNanos = Duration.ofMillis(epochMillis - System.currentTimeMillis()).toNanos();
+        if (delayNanos <= 0) {
+            return;
+        }
+        long until = System.nanoTime() + delayNanos;
+        if (until - pausedUntilNanos > 0) {
+            pausedUntilNanos = until;
+        }
+        // whatever was saved up is no longer valid once the server says stop
+        tokens = Math.min(tokens, 0);
+    }
+
+    /**
+     * Cap the current balance to what the server says is left in its window.
+     */
+    public synchronized void limitAvailable(int remaining) {
+        refill(System.nanoTime());
+        tokens = Math.min(tokens, remaining);
+    }
+
+    private void refill(long now) {
+        long elapsed = now - lastRefillNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * permitsPerNano);
+            lastRefillNanos = now;
+        }
+    }
+}
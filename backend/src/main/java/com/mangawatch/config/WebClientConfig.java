@@ -1,18 +1,39 @@
 package com.mangawatch.config;
 
+import java.time.Duration;
+
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
 
+import reactor.netty.http.client.HttpClient;
+
 @Configuration
 public class WebClientConfig {
 	
+	/**
+	 * Shared request budget for everything that talks to api.mangadex.org
+	 */
+	@Bean
+	public TokenBucket mangadexRateLimiter(
+			@Value("${mangadex.rate-limit.requests-per-second:5}") double requestsPerSecond,
+			@Value("${mangadex.rate-limit.burst:5}") int burst) {
+		return new TokenBucket(requestsPerSecond, burst);
+	}
+	
 	@Bean
-	public WebClient mangadexWebClient(@Value("${mangadex.base-url:https://api.mangadex.org}" )String baseUrl) {
+	public WebClient mangadexWebClient(@Value("${mangadex.base-url:https://api.mangadex.org}" )String baseUrl,
+			TokenBucket mangadexRateLimiter,
+			@Value("${mangadex.import.max-retries:3}") int maxRetries,
+			@Value("${mangadex.rate-limit.backoff-base-ms:500}") long backoffBaseMs) {
 		return WebClient.builder()
 				.baseUrl(baseUrl)
+				// per-attempt timeout, so rate limit waits and retries don't count against it
+				.clientConnector(new ReactorClientHttpConnector(
+						HttpClient.create().responseTimeout(Duration.ofSeconds(30))))
 				.defaultHeader(HttpHeaders.USER_AGENT, "MangaWatch/0.1")
 				.codecs(configurer -> configurer
 					    .defaultCodecs()
@@ -22,6 +43,7 @@ public class WebClientConfig {
 		            request.headers().forEach((k, v) -> System.out.println("Header " + k + ": " + v));
 		            return next.exchange(request);
 		        })
+				.filter(new MangadexRateLimitFilter(mangadexRateLimiter, maxRetries, Duration.ofMillis(backoffBaseMs)))
 				.build();
 	}
 	
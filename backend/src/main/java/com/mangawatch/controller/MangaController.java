@@ -1,7 +1,7 @@
 package com.mangawatch.controller;
 
+import com.mangawatch.dto.CursorPage;
 import com.mangawatch.dto.MangaDto;
-import com.mangawatch.mapper.MangaMapper;
 import com.mangawatch.model.Manga;
 import com.mangawatch.service.MangaService;
 
@@ -11,7 +11,9 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
@@ -37,7 +39,6 @@ public class MangaController {
     @GetMapping("/{id}")
     public MangaDto getMangaById(@PathVariable Long id) {
         return service.getById(id)
-            .map(MangaMapper::toDto)
             .orElseThrow(() -> new ResponseStatusException(
                 HttpStatus.NOT_FOUND, 
                 "Manga not found with id: " + id
@@ -51,7 +52,6 @@ public class MangaController {
     @GetMapping("/dex/{dexId}")
     public MangaDto getMangaByDexId(@PathVariable String dexId) {
         return service.getByDexId(dexId)
-            .map(MangaMapper::toDto)
             .orElseThrow(() -> new ResponseStatusException(
                 HttpStatus.NOT_FOUND, 
                 "Manga not found with dexId: " + dexId
@@ -97,12 +97,22 @@ public class MangaController {
 //        return service.search(query, status, genres, pageable);
 //    }
     
+    /**
+     * genreMode=any (default) | all says whether a manga needs one or every one of genres;
+     * excludeGenres leaves out manga with any of those.
+     * total=exact (default) | estimate | none picks how the number of matches is reported;
+     * the X-Total-Mode header says which one the response carries. With none the body is a
+     * Slice (content plus hasNext-style flags, no totals).
+     */
     @GetMapping
-    public Page<MangaDto> list(
+    public ResponseEntity<Slice<MangaDto>> list(
         @RequestParam(required = false) String query,
         @RequestParam(required = false) String status,
         @RequestParam(required = false) List<String> genres,
-        @RequestParam(required = false, defaultValue = "title,asc") String sort,
+        @RequestParam(required = false) String genreMode,
+        @RequestParam(required = false) List<String> excludeGenres,
+        @RequestParam(required = false) String sort,
+        @RequestParam(required = false) String total,
         Pageable pageable
     ) {
         log.info(
@@ -110,9 +120,56 @@ public class MangaController {
             query, status, genres, sort, pageable.getPageNumber()
         );
 
-        return service.search(query, status, genres, sort, pageable);
+        MangaService.Total totalMode;
+        try {
+            totalMode = MangaService.Total.parse(total);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "total must be exact, estimate or none");
+        }
+        MangaService.Results results = service.search(query, status, genres, allGenres(genreMode), excludeGenres,
+            sort, totalMode, pageable);
+        return ResponseEntity.ok()
+            .header("X-Total-Mode", results.total().name().toLowerCase())
+            .body(results.page());
     }
     
+    /**
+     * GET /api/manga?cursor=
+     * Same search with keyset paging: pass an empty cursor for the first page, then each
+     * response's nextCursor. No total count; deep pages cost the same as the first.
+     * 
+     * Example: /api/manga?genres=Action&sort=year,desc&size=20&cursor=
+     */
+    @GetMapping(params = "cursor")
+    public CursorPage<MangaDto> scroll(
+        @RequestParam(required = false) String query,
+        @RequestParam(required = false) String status,
+        @RequestParam(required = false) List<String> genres,
+        @RequestParam(required = false) String genreMode,
+        @RequestParam(required = false) List<String> excludeGenres,
+        @RequestParam(required = false) String sort,
+        @RequestParam String cursor,
+        @RequestParam(required = false, defaultValue = "20") int size
+    ) {
+        try {
+            return service.scroll(query, status, genres, allGenres(genreMode), excludeGenres, sort, cursor,
+                Math.max(1, Math.min(size, 2000)));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+    
+    // genreMode: any (default) or all
+    private static boolean allGenres(String genreMode) {
+        if (genreMode == null || genreMode.isBlank() || "any".equalsIgnoreCase(genreMode.trim())) {
+            return false;
+        }
+        if ("all".equalsIgnoreCase(genreMode.trim())) {
+            return true;
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "genreMode must be any or all");
+    }
+
     /**
      * GET /api/manga/stats
      * Get database statistics
@@ -121,6 +178,8 @@ public class MangaController {
     public Map<String, Object> getStats() {
         return Map.of(
             "totalManga", service.getTotalCount(),
+            "searchCache", service.getSearchCacheStats(),
+            "caches", service.getCacheStats(),
             "message", "Manga database statistics"
         );
     }
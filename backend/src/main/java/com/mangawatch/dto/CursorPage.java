@@ -0,0 +1,14 @@
+package com.mangawatch.dto;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing. Pass nextCursor back as ?cursor= for the next page;
+ * it's null on the last page.
+ */
+public record CursorPage<T>(
+        List<T> content,
+        int size,
+        boolean hasNext,
+        String nextCursor
+){}
@@ -1,7 +1,9 @@
 package com.mangawatch.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
 import java.util.List;
 import java.util.Map;
 
@@ -47,6 +49,9 @@ public class MangadexResponse {
         private String type;
         private MangadexAttributes attributes;
         private List<MangadexRelationship> relationships;
+        // the element exactly as MangaDex sent it, including fields not mapped here
+        @JsonIgnore
+        private JsonNode raw;
 
         public String getId() { return id; }
         public void setId(String id) { this.id = id; }
@@ -61,6 +66,12 @@ public class MangadexResponse {
         public void setRelationships(List<MangadexRelationship> relationships) { 
             this.relationships = relationships; 
         }
+
+        /** null when the element was built without its source (e.g. in tests) */
+        @JsonIgnore
+        public JsonNode getRaw() { return raw; }
+        @JsonIgnore
+        public void setRaw(JsonNode raw) { this.raw = raw; }
     }
 
     /**
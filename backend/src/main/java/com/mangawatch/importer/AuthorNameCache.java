@@ -0,0 +1,139 @@
+package com.mangawatch.importer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Two-tier cache of MangaDex author names, keyed by author UUID.
+ *
+ * Lookups go memory (Caffeine) -> author table -> MangaDex /author, and only ids that
+ * are unknown or older than the TTL reach the API. Fetched names are written back to
+ * both tiers, so re-imports and later pages mostly never leave the process.
+ */
+@Component
+public class AuthorNameCache {
+
+    private static final Logger log = LoggerFactory.getLogger(AuthorNameCache.class);
+
+    private static final String SELECT_SQL =
+        "SELECT dex_id, name, fetched_at FROM author WHERE dex_id = ANY(?::text[])";
+
+    private static final String UPSERT_SQL =
+        "INSERT INTO author (dex_id, name, fetched_at) " +
+        "SELECT ids.dex_id, ids.name, now() FROM unnest(?::text[], ?::text[]) AS ids(dex_id, name) " +
+        "ON CONFLICT (dex_id) DO UPDATE SET name = EXCLUDED.name, fetched_at = EXCLUDED.fetched_at";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration ttl;
+    private final Cache<String, String> memory;
+
+    public AuthorNameCache(
+            JdbcTemplate jdbcTemplate,
+            @Value("${mangadex.import.author-cache-size:200000}") long maximumSize,
+            @Value("${mangadex.import.author-ttl-days:30}") long ttlDays) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ttl = Duration.ofDays(ttlDays);
+        this.memory = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(this.ttl)
+            .build();
+    }
+
+    /**
+     * Resolve author names, calling the fetcher only for ids missing from (or stale in) both tiers.
+     *
+     * @param authorIds MangaDex author UUIDs
+     * @param fetcher Fetches names from MangaDex for the ids it's given
+     * @return authorId -> name for every id that could be resolved
+     */
+    public Map<String, String> resolve(Set<String> authorIds, Function<Set<String>, Map<String, String>> fetcher) {
+        Map<String, String> names = new HashMap<>();
+        if (authorIds.isEmpty()) {
+            return names;
+        }
+
+        // Tier 1: memory
+        Set<String> missing = new HashSet<>();
+        for (String id : authorIds) {
+            String name = memory.getIfPresent(id);
+            if (name != null) {
+                names.put(id, name);
+            } else {
+                missing.add(id);
+            }
+        }
+        if (missing.isEmpty()) {
+            return names;
+        }
+
+        // Tier 2: author table
+        Map<String, String> stale = new HashMap<>();
+        Instant freshAfter = Instant.now().minus(ttl);
+        jdbcTemplate.query(SELECT_SQL,
+            ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", missing.toArray())),
+            rs -> {
+                String id = rs.getString("dex_id");
+                String name = rs.getString("name");
+                Timestamp fetchedAt = rs.getTimestamp("fetched_at");
+                if (fetchedAt != null && fetchedAt.toInstant().isAfter(freshAfter)) {
+                    names.put(id, name);
+                    memory.put(id, name);
+                    missing.remove(id);
+                } else {
+                    stale.put(id, name);
+                }
+            });
+        if (missing.isEmpty()) {
+            return names;
+        }
+
+        // Tier 3: MangaDex
+        log.debug("Author cache miss for {} of {} ids", missing.size(), authorIds.size());
+        Map<String, String> fetched = fetcher.apply(missing);
+        if (!fetched.isEmpty()) {
+            store(fetched);
+            names.putAll(fetched);
+        }
+
+        // An old name beats "Unknown" if the refresh didn't come back
+        for (String id : missing) {
+            if (!names.containsKey(id) && stale.containsKey(id)) {
+                names.put(id, stale.get(id));
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Put names into both tiers, e.g. when they're already known from another source.
+     */
+    public void store(Map<String, String> names) {
+        memory.putAll(names);
+        String[] ids = names.keySet().toArray(new String[0]);
+        String[] values = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            values[i] = names.get(ids[i]);
+        }
+        try {
+            jdbcTemplate.update(UPSERT_SQL, ps -> {
+                ps.setArray(1, ps.getConnection().createArrayOf("text", ids));
+                ps.setArray(2, ps.getConnection().createArrayOf("text", values));
+            });
+        } catch (Exception e) {
+            // the memory tier still has them; worst case they're fetched again next run
+            log.warn("Failed to persist {} author names", ids.length, e);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.mangawatch.importer;
+
+import com.mangawatch.importer.ImportCheckpointStore.SegmentState;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Consumer;
+
+/**
+ * Works out how far one segment has been committed.
+ *
+ * A page is handed to the pipeline in chunks and chunks are persisted concurrently, so pages
+ * finish in any order. Each page gets a {@link Mark} that stays open until the fetcher seals it
+ * with the position after the page and every chunk has been through the persist stage. A
+ * position is only reported once its page and all pages before it are done.
+ *
+ * A page whose chunk was lost (neither saved nor dead-lettered) never completes, so nothing
+ * at or after it is reported again and a resume starts before it.
+ */
+class CommitTracker {
+
+    private final Deque<Mark> marks = new ArrayDeque<>();
+    private final Consumer<SegmentState> onCommitted;
+    private boolean lostPages;
+
+    CommitTracker(Consumer<SegmentState> onCommitted) {
+        this.onCommitted = onCommitted;
+    }
+
+    /**
+     * Start tracking the next page of the segment
+     */
+    synchronized Mark open() {
+        Mark mark = new Mark();
+        marks.addLast(mark);
+        return mark;
+    }
+
+    /**
+     * Whether a chunk of any page was lost; the segment can't be considered done then
+     */
+    synchronized boolean hasLostPages() {
+        return lostPages;
+    }
+
+    final class Mark {
+        // starts at one for the seal, plus one per chunk in flight
+        private int pending = 1;
+        private SegmentState position;
+
+        private Mark() {}
+
+        /**
+         * A chunk of this page is about to be submitted
+         */
+        void retain() {
+            synchronized (CommitTracker.this) {
+                pending++;
+            }
+        }
+
+        /**
+         * A chunk of this page has been persisted (or dropped)
+         */
+        void release() {
+            complete(this, null);
+        }
+
+        /**
+         * A chunk of this page could neither be saved nor dead-lettered: keep the page open for good
+         */
+        void lose() {
+            synchronized (CommitTracker.this) {
+                lostPages = true;
+            }
+        }
+
+        /**
+         * The page is fully submitted. A null position means it didn't move the segment
+         * forward, e.g. a fetch that failed.
+         */
+        void seal(SegmentState position) {
+            complete(this, position);
+        }
+    }
+
+    // checkpoints are written under the lock so they can't land out of order
+    private synchronized void complete(Mark mark, SegmentState sealedAt) {
+        if (sealedAt != null) {
+            mark.position = sealedAt;
+        }
+        mark.pending--;
+
+        SegmentState committed = null;
+        while (!marks.isEmpty() && marks.peekFirst().pending == 0) {
+            Mark head = marks.pollFirst();
+            if (head.position != null) {
+                committed = head.position;
+            }
+        }
+        if (committed != null) {
+            onCommitted.accept(committed);
+        }
+    }
+}
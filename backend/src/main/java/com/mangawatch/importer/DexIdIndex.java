@@ -0,0 +1,171 @@
+package com.mangawatch.importer;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * MangaDex id -> manga.id, kept in primitive arrays so the importer can tell new titles
+ * from known ones without asking the database.
+ *
+ * MangaDex ids are UUIDs, stored as their two 64-bit halves in an open-addressing table with
+ * linear probing. An entry costs 24 bytes of array space (about 6 MB for 100k titles at the
+ * 50% load the table grows at) and lookups allocate nothing. Ids that aren't UUIDs can't be
+ * indexed; they're simply reported as unknown.
+ *
+ * Thread-safe: lookups share a read lock, inserts and growth take the write lock.
+ */
+final class DexIdIndex {
+
+    private static final int MIN_CAPACITY = 1 << 10;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // slot i holds the key halves at 2i, 2i + 1 and the manga id at i; id 0 marks an empty slot
+    private long[] keys;
+    private long[] ids;
+    private int mask;
+    private int size;
+
+    DexIdIndex(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the manga id, or 0 if the dex id isn't indexed
+     */
+    long get(String dexId) {
+        if (!isUuid(dexId)) {
+            return 0;
+        }
+        long hi = half(dexId, 0, 18);
+        long lo = half(dexId, 19, 36);
+        lock.readLock().lock();
+        try {
+            int slot = find(hi, lo);
+            return slot >= 0 ? ids[slot] : 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Add or replace an entry. Ids must be positive; non-UUID dex ids are ignored.
+     */
+    void put(String dexId, long id) {
+        if (id <= 0 || !isUuid(dexId)) {
+            return;
+        }
+        long hi = half(dexId, 0, 18);
+        long lo = half(dexId, 19, 36);
+        lock.writeLock().lock();
+        try {
+            if ((size + 1) * 2L > ids.length) {
+                grow();
+            }
+            insert(hi, lo, id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int find(long hi, long lo) {
+        int slot = slotOf(hi, lo);
+        while (ids[slot] != 0) {
+            if (keys[2 * slot] == hi && keys[2 * slot + 1] == lo) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insert(long hi, long lo, long id) {
+        int slot = slotOf(hi, lo);
+        while (ids[slot] != 0) {
+            if (keys[2 * slot] == hi && keys[2 * slot + 1] == lo) {
+                ids[slot] = id;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[2 * slot] = hi;
+        keys[2 * slot + 1] = lo;
+        ids[slot] = id;
+        size++;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldIds = ids;
+        allocate(oldIds.length * 2);
+        for (int slot = 0; slot < oldIds.length; slot++) {
+            if (oldIds[slot] != 0) {
+                insert(oldKeys[2 * slot], oldKeys[2 * slot + 1], oldIds[slot]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity * 2];
+        ids = new long[capacity];
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        long wanted = Math.max(MIN_CAPACITY, expectedSize * 2L);
+        return (int) Math.min(1 << 30, Long.highestOneBit(wanted - 1) << 1);
+    }
+
+    private int slotOf(long hi, long lo) {
+        // murmur3 finalizer; version/variant bits make the raw halves poorly spread
+        long h = hi * 31 + lo;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+
+    /**
+     * 8-4-4-4-12 hex digits, either case
+     */
+    static boolean isUuid(String value) {
+        if (value == null || value.length() != 36) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            char c = value.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (Character.digit(c, 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // hex digits in [from, to), skipping dashes
+    private static long half(String uuid, int from, int to) {
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            char c = uuid.charAt(i);
+            if (c != '-') {
+                value = (value << 4) | Character.digit(c, 16);
+            }
+        }
+        return value;
+    }
+}
@@ -0,0 +1,211 @@
+package com.mangawatch.importer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.mangawatch.importer.MangadexImporter.ImportResult;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Durable progress of catalog walks, so an import killed mid-run can carry on from
+ * the last committed page instead of starting over.
+ *
+ * Each run has one checkpoint row per timeline segment. A checkpoint only moves once
+ * every page before it has been through the persist stage, so resuming from it never
+ * skips rows; at worst a few pages that were saved out of order are fetched again.
+ */
+@Component
+public class ImportCheckpointStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportCheckpointStore.class);
+
+    public enum RunState { RUNNING, COMPLETED, CANCELLED, INCOMPLETE }
+
+    /**
+     * Committed position of one segment
+     */
+    public record SegmentState(int segment, String from, String until, String cursor, Set<String> seenAtCursor, boolean done) {}
+
+    /**
+     * Row counts saved with a run. They're cumulative across resumes and, since pages are
+     * persisted concurrently, may run slightly ahead of the checkpoints.
+     */
+    public record Counters(int fetched, int inserted, int updated, int skipped, int errors) {
+        static final Counters NONE = new Counters(0, 0, 0, 0, 0);
+
+        Counters plus(ImportResult result) {
+            return new Counters(
+                fetched + result.getTotalFetched(),
+                inserted + result.getNewInserted(),
+                updated + result.getUpdated(),
+                skipped + result.getSkipped(),
+                errors + result.getErrors());
+        }
+    }
+
+    public record Run(long id, String type, String cursorField, RunState state, int maxManga,
+                      String highWaterMark, LocalDateTime startedAt, Counters counters, List<SegmentState> segments) {}
+
+    private static final String INSERT_RUN_SQL =
+        "INSERT INTO import_run (type, cursor_field, state, max_manga, high_water_mark, started_at, updated_at) " +
+        "VALUES (?, ?, 'RUNNING', ?, ?, now(), now())";
+
+    private static final String INSERT_SEGMENTS_SQL =
+        "INSERT INTO import_checkpoint (run_id, segment, range_from, range_until, cursor_at, updated_at) " +
+        "SELECT ?, s.segment, s.range_from, s.range_until, s.range_from, now() " +
+        "FROM unnest(?::int[], ?::text[], ?::text[]) AS s(segment, range_from, range_until)";
+
+    // checkpoint and run counters move together
+    private static final String CHECKPOINT_SQL =
+        "WITH checkpoint AS (" +
+        "  UPDATE import_checkpoint SET cursor_at = ?, seen_at_cursor = ?::text[], done = ?, updated_at = now() " +
+        "  WHERE run_id = ? AND segment = ?) " +
+        "UPDATE import_run SET fetched = ?, inserted = ?, updated = ?, skipped = ?, errors = ?, updated_at = now() " +
+        "WHERE id = ?";
+
+    private static final String FINISH_RUN_SQL =
+        "UPDATE import_run SET state = ?, fetched = ?, inserted = ?, updated = ?, skipped = ?, errors = ?, updated_at = now() " +
+        "WHERE id = ?";
+
+    private static final String SELECT_LATEST_RUN_SQL =
+        "SELECT id, type, cursor_field, state, max_manga, high_water_mark, started_at, fetched, inserted, updated, skipped, errors " +
+        "FROM import_run ORDER BY id DESC LIMIT 1";
+
+    private static final String SELECT_SEGMENTS_SQL =
+        "SELECT segment, range_from, range_until, cursor_at, seen_at_cursor, done " +
+        "FROM import_checkpoint WHERE run_id = ? ORDER BY segment";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ImportCheckpointStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Record a new run and the segments it will walk
+     *
+     * @return the run id
+     */
+    @Transactional
+    public long startRun(String type, String cursorField, int maxManga, String highWaterMark, List<SegmentState> segments) {
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(INSERT_RUN_SQL, new String[] { "id" });
+            ps.setString(1, type);
+            ps.setString(2, cursorField);
+            ps.setInt(3, maxManga);
+            ps.setString(4, highWaterMark);
+            return ps;
+        }, keys);
+        long runId = Objects.requireNonNull(keys.getKey()).longValue();
+
+        int n = segments.size();
+        Integer[] indexes = new Integer[n];
+        String[] froms = new String[n];
+        String[] untils = new String[n];
+        for (int i = 0; i < n; i++) {
+            indexes[i] = segments.get(i).segment();
+            froms[i] = segments.get(i).from();
+            untils[i] = segments.get(i).until();
+        }
+        jdbcTemplate.update(INSERT_SEGMENTS_SQL, ps -> {
+            ps.setLong(1, runId);
+            ps.setArray(2, ps.getConnection().createArrayOf("int4", indexes));
+            ps.setArray(3, ps.getConnection().createArrayOf("text", froms));
+            ps.setArray(4, ps.getConnection().createArrayOf("text", untils));
+        });
+        return runId;
+    }
+
+    /**
+     * Save a segment's committed position. Failures are logged, not thrown: losing a
+     * checkpoint only means a resume repeats a little more work.
+     */
+    public void checkpoint(long runId, SegmentState segment, Counters counters) {
+        try {
+            jdbcTemplate.update(CHECKPOINT_SQL, ps -> {
+                ps.setString(1, segment.cursor());
+                ps.setArray(2, textArray(ps, segment.seenAtCursor()));
+                ps.setBoolean(3, segment.done());
+                ps.setLong(4, runId);
+                ps.setInt(5, segment.segment());
+                ps.setInt(6, counters.fetched());
+                ps.setInt(7, counters.inserted());
+                ps.setInt(8, counters.updated());
+                ps.setInt(9, counters.skipped());
+                ps.setInt(10, counters.errors());
+                ps.setLong(11, runId);
+            });
+        } catch (Exception e) {
+            log.warn("Failed to save checkpoint for run {} segment {}", runId, segment.segment(), e);
+        }
+    }
+
+    public void markRunning(long runId) {
+        jdbcTemplate.update("UPDATE import_run SET state = 'RUNNING', updated_at = now() WHERE id = ?", runId);
+    }
+
+    public void finishRun(long runId, RunState state, Counters counters) {
+        try {
+            jdbcTemplate.update(FINISH_RUN_SQL, state.name(), counters.fetched(), counters.inserted(),
+                counters.updated(), counters.skipped(), counters.errors(), runId);
+        } catch (Exception e) {
+            log.warn("Failed to record end of import run {} as {}", runId, state, e);
+        }
+    }
+
+    /**
+     * The most recent run with its segment checkpoints, if any run has been recorded
+     */
+    public Optional<Run> latestRun() {
+        List<Run> runs = jdbcTemplate.query(SELECT_LATEST_RUN_SQL, (rs, rowNum) -> {
+            long id = rs.getLong("id");
+            Timestamp startedAt = rs.getTimestamp("started_at");
+            return new Run(
+                id,
+                rs.getString("type"),
+                rs.getString("cursor_field"),
+                RunState.valueOf(rs.getString("state")),
+                rs.getInt("max_manga"),
+                rs.getString("high_water_mark"),
+                startedAt != null ? startedAt.toLocalDateTime() : null,
+                new Counters(rs.getInt("fetched"), rs.getInt("inserted"), rs.getInt("updated"),
+                    rs.getInt("skipped"), rs.getInt("errors")),
+                List.of());
+        });
+        if (runs.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Run run = runs.get(0);
+        List<SegmentState> segments = jdbcTemplate.query(SELECT_SEGMENTS_SQL, (rs, rowNum) -> {
+            Array seen = rs.getArray("seen_at_cursor");
+            Set<String> seenIds = seen != null
+                ? new HashSet<>(Arrays.asList((String[]) seen.getArray()))
+                : new HashSet<>();
+            return new SegmentState(
+                rs.getInt("segment"),
+                rs.getString("range_from"),
+                rs.getString("range_until"),
+                rs.getString("cursor_at"),
+                seenIds,
+                rs.getBoolean("done"));
+        }, run.id());
+        return Optional.of(new Run(run.id(), run.type(), run.cursorField(), run.state(), run.maxManga(),
+            run.highWaterMark(), run.startedAt(), run.counters(), segments));
+    }
+
+    private static Array textArray(PreparedStatement ps, Set<String> values) throws java.sql.SQLException {
+        return ps.getConnection().createArrayOf("text", values != null ? values.toArray() : new String[0]);
+    }
+}
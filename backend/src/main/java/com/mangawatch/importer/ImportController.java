@@ -2,15 +2,17 @@ package com.mangawatch.importer;
 
 
 import com.mangawatch.importer.MangadexImporter.ImportResult;
+import com.mangawatch.media.CoverPrefetcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executors;
+import java.util.Optional;
 
 /**
  * Admin endpoints for importing manga data from MangaDex
@@ -22,13 +24,13 @@ public class ImportController {
     private static final Logger log = LoggerFactory.getLogger(ImportController.class);
     
     private final MangadexImporter importer;
+    private final ImportJobManager jobManager;
+    private final CoverPrefetcher coverPrefetcher;
     
-    // Track if an import is currently running
-    private volatile boolean importInProgress = false;
-    private volatile ImportResult lastImportResult = null;
-    
-    public ImportController(MangadexImporter importer) {
+    public ImportController(MangadexImporter importer, ImportJobManager jobManager, CoverPrefetcher coverPrefetcher) {
         this.importer = importer;
+        this.jobManager = jobManager;
+        this.coverPrefetcher = coverPrefetcher;
     }
     
     /**
@@ -39,8 +41,18 @@ public class ImportController {
     public ResponseEntity<Map<String, Object>> getImportInfo() {
         Map<String, Object> info = new HashMap<>();
         info.put("totalAvailableOnMangadex", importer.getTotalAvailableManga());
-        info.put("importInProgress", importInProgress);
-        info.put("lastImportResult", lastImportResult);
+        info.put("importInProgress", jobManager.isRunning());
+        info.put("lastImportResult", jobManager.lastFinished().map(ImportJob::getResult).orElse(null));
+        info.put("syncHighWaterMark", importer.getHighWaterMark().orElse("N/A"));
+        info.put("deadLetters", importer.countDeadLetters());
+        info.put("resumableRun", importer.findResumableRun()
+            .map(run -> Map.of(
+                "runId", run.id(),
+                "type", run.type(),
+                "state", run.state().name(),
+                "fetched", run.counters().fetched(),
+                "segmentsDone", run.segments().stream().filter(ImportCheckpointStore.SegmentState::done).count() + "/" + run.segments().size()))
+            .orElse(null));
         
         return ResponseEntity.ok(info);
     }
@@ -55,7 +67,12 @@ public class ImportController {
     @PostMapping("/start")
     public ResponseEntity<Map<String, String>> startFullImport() {
         
-        if (importInProgress) {
+        log.info("Starting import of all manga using cursor-based pagination");
+        
+        ImportJob job;
+        try {
+            job = jobManager.start("full", importer::importAllManga);
+        } catch (IllegalStateException e) {
             return ResponseEntity.status(409)
                 .body(Map.of(
                     "status", "error",
@@ -63,44 +80,46 @@ public class ImportController {
                 ));
         }
         
-        log.info("Starting import of all manga using cursor-based pagination");
-        importInProgress = true;
-        
-        // Run import in background thread
-        CompletableFuture.runAsync(() -> {
-            try {
-                ImportResult result = importer.importAllManga();
-                lastImportResult = result;
-                log.info("Import completed: {}", result);
-            } catch (Exception e) {
-                log.error("Import failed with exception", e);
-            } finally {
-                importInProgress = false;
-            }
-        }, Executors.newSingleThreadExecutor());
-        
         return ResponseEntity.accepted()
             .body(Map.of(
                 "status", "accepted",
+                "jobId", String.valueOf(job.getId()),
                 "message", "Full import started using cursor-based pagination. Check /admin/import/status for progress."
             ));
     }
     
     /**
      * POST /admin/import/resume
-     * Resume import from a specific createdAt cursor
+     * Resume the last interrupted import, or start from a specific createdAt cursor
      * 
-     * Use this if import was interrupted - provide the last cursor from the previous run.
-     * You can get the cursor from the lastImportResult in /admin/import/status
+     * Without a cursor, the most recent unfinished run (see resumableRun in /admin/import/info)
+     * continues from its last committed checkpoint with its original settings.
+     * With a cursor, a new import walks forward from that createdAt timestamp.
      * 
+     * Example: POST /admin/import/resume
      * Example: POST /admin/import/resume?cursor=2024-01-15T10:30:45
      */
     @PostMapping("/resume")
     public ResponseEntity<Map<String, String>> resumeImport(
-            @RequestParam String cursor,
+            @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "2147483647") int maxManga) {
         
-        if (importInProgress) {
+        if (cursor == null && importer.findResumableRun().isEmpty()) {
+            return ResponseEntity.status(409)
+                .body(Map.of(
+                    "status", "error",
+                    "message", "No interrupted import to resume. Pass a cursor to start from one."
+                ));
+        }
+        
+        log.info("Resuming import from {}", cursor != null ? "cursor " + cursor : "last checkpoint");
+        
+        ImportJob job;
+        try {
+            job = cursor != null
+                ? jobManager.start("resume", j -> importer.importMangaWithCursor(cursor, maxManga, j))
+                : jobManager.start("resume", importer::resumeLastRun);
+        } catch (IllegalStateException e) {
             return ResponseEntity.status(409)
                 .body(Map.of(
                     "status", "error",
@@ -108,37 +127,225 @@ public class ImportController {
                 ));
         }
         
-        log.info("Resuming import from cursor: {}", cursor);
-        importInProgress = true;
-        
-        CompletableFuture.runAsync(() -> {
-            try {
-                ImportResult result = importer.importMangaWithCursor(cursor, maxManga);
-                lastImportResult = result;
-                log.info("Resume import completed: {}", result);
-            } catch (Exception e) {
-                log.error("Resume import failed", e);
-            } finally {
-                importInProgress = false;
-            }
-        }, Executors.newSingleThreadExecutor());
+        return ResponseEntity.accepted()
+            .body(Map.of(
+                "status", "accepted",
+                "jobId", String.valueOf(job.getId()),
+                "message", cursor != null
+                    ? String.format("Import resumed from cursor: %s", cursor)
+                    : "Import resumed from the last checkpoint. Check /admin/import/status for progress."
+            ));
+    }
+    
+    /**
+     * POST /admin/import/sync
+     * Incremental sync - only fetch manga updated on MangaDex since the last full import or sync
+     * 
+     * Pages by updatedAt starting from the persisted high-water mark (see /admin/import/info).
+     * The same sync also runs nightly when mangadex.sync.enabled=true.
+     */
+    @PostMapping("/sync")
+    public ResponseEntity<Map<String, String>> startDeltaSync() {
+        
+        if (importer.getHighWaterMark().isEmpty()) {
+            return ResponseEntity.status(409)
+                .body(Map.of(
+                    "status", "error",
+                    "message", "No sync high-water mark recorded yet. Run a full import first."
+                ));
+        }
+        
+        log.info("Starting delta sync from {}", importer.getHighWaterMark().get());
+        
+        ImportJob job;
+        try {
+            job = jobManager.start("sync", importer::syncUpdatedSince);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409)
+                .body(Map.of(
+                    "status", "error",
+                    "message", "Import already in progress"
+                ));
+        }
         
         return ResponseEntity.accepted()
             .body(Map.of(
                 "status", "accepted",
-                "message", String.format("Import resumed from cursor: %s", cursor)
+                "jobId", String.valueOf(job.getId()),
+                "message", "Delta sync started. Check /admin/import/status for progress."
+            ));
+    }
+    
+    /**
+     * GET /admin/import/dumps
+     * List the recorded MangaDex dumps available for replay (see mangadex.import.record-dir)
+     */
+    @GetMapping("/dumps")
+    public ResponseEntity<List<String>> listDumps() {
+        return ResponseEntity.ok(importer.listDumps());
+    }
+    
+    /**
+     * POST /admin/import/replay
+     * Load a recorded dump into the database without calling MangaDex
+     * 
+     * Runs the same transform and persist stages as a live import, so a fresh environment
+     * can be seeded in minutes. Example: POST /admin/import/replay?dump=full-20250101-030000
+     */
+    @PostMapping("/replay")
+    public ResponseEntity<Map<String, String>> replayDump(@RequestParam String dump) {
+        
+        Optional<Path> directory = importer.findDump(dump);
+        if (directory.isEmpty()) {
+            return ResponseEntity.badRequest()
+                .body(Map.of(
+                    "status", "error",
+                    "message", "Unknown dump: " + dump + ". See /admin/import/dumps."
+                ));
+        }
+        
+        log.info("Replaying dump {}", directory.get());
+        
+        ImportJob job;
+        try {
+            job = jobManager.start("replay", j -> importer.replayDump(directory.get(), j));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409)
+                .body(Map.of(
+                    "status", "error",
+                    "message", "Import already in progress"
+                ));
+        }
+        
+        return ResponseEntity.accepted()
+            .body(Map.of(
+                "status", "accepted",
+                "jobId", String.valueOf(job.getId()),
+                "message", "Replay of " + dump + " started. Check /admin/import/status for progress."
+            ));
+    }
+    
+    /**
+     * POST /admin/import/retransform
+     * Re-run the transformer over the MangaDex payloads stored by earlier imports (manga_raw)
+     * 
+     * Use after adding a field to MangadexTransformer: the catalog is rebuilt from the local
+     * copies in parallel, without a rate-limited crawl. Only titles imported while
+     * mangadex.import.keep-raw was on are covered.
+     */
+    @PostMapping("/retransform")
+    public ResponseEntity<Map<String, String>> retransform() {
+        
+        ImportJob job;
+        try {
+            job = jobManager.start("retransform", importer::retransformStored);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409)
+                .body(Map.of(
+                    "status", "error",
+                    "message", "Import already in progress"
+                ));
+        }
+        
+        return ResponseEntity.accepted()
+            .body(Map.of(
+                "status", "accepted",
+                "jobId", String.valueOf(job.getId()),
+                "message", "Re-transform of stored payloads started. Check /admin/import/status for progress."
+            ));
+    }
+    
+    /**
+     * GET /admin/import/dead-letters
+     * Manga that failed to import (fetch, transform or save), most recent failure first
+     * 
+     * Example: GET /admin/import/dead-letters?limit=50&offset=0
+     */
+    @GetMapping("/dead-letters")
+    public ResponseEntity<Map<String, Object>> listDeadLetters(
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(defaultValue = "0") int offset) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("total", importer.countDeadLetters());
+        body.put("items", importer.listDeadLetters(Math.max(1, Math.min(limit, 500)), Math.max(0, offset)));
+        return ResponseEntity.ok(body);
+    }
+    
+    /**
+     * GET /admin/import/dead-letters/{dexId}
+     * One failed manga, including the payload MangaDex sent for it
+     */
+    @GetMapping("/dead-letters/{dexId}")
+    public ResponseEntity<ImportDeadLetterStore.DeadLetter> getDeadLetter(@PathVariable String dexId) {
+        return importer.findDeadLetter(dexId)
+            .map(ResponseEntity::ok)
+            .orElse(ResponseEntity.notFound().build());
+    }
+    
+    /**
+     * POST /admin/import/dead-letters/retry
+     * Re-fetch dead-lettered manga by id (100 per request) and import them again
+     * 
+     * Without ids, retries the oldest failures up to maxManga. Titles that get in are
+     * removed from the list; the rest stay with their attempt count bumped.
+     * 
+     * Example: POST /admin/import/dead-letters/retry
+     * Example: POST /admin/import/dead-letters/retry?ids=a1b2...&ids=c3d4...
+     */
+    @PostMapping("/dead-letters/retry")
+    public ResponseEntity<Map<String, String>> retryDeadLetters(
+            @RequestParam(required = false) List<String> ids,
+            @RequestParam(defaultValue = "2147483647") int maxManga) {
+        
+        if ((ids == null || ids.isEmpty()) && importer.countDeadLetters() == 0) {
+            return ResponseEntity.badRequest()
+                .body(Map.of(
+                    "status", "error",
+                    "message", "No dead-lettered manga to retry"
+                ));
+        }
+        
+        ImportJob job;
+        try {
+            job = jobManager.start("retry", j -> importer.retryDeadLetters(ids, maxManga, j));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409)
+                .body(Map.of(
+                    "status", "error",
+                    "message", "Import already in progress"
+                ));
+        }
+        
+        return ResponseEntity.accepted()
+            .body(Map.of(
+                "status", "accepted",
+                "jobId", String.valueOf(job.getId()),
+                "message", "Dead-letter retry started. Check /admin/import/status for progress."
             ));
     }
     
     /**
      * GET /admin/import/status
      * Check the status of the current/last import
+     * 
+     * "job" shows live progress of the running (or most recent) job: pages fetched, rows/sec,
+     * current cursor, ETA and how busy each stage is, with the likely bottleneck.
      */
     @GetMapping("/status")
     public ResponseEntity<Map<String, Object>> getImportStatus() {
         Map<String, Object> status = new HashMap<>();
-        status.put("inProgress", importInProgress);
+        status.put("inProgress", jobManager.isRunning());
+        jobManager.currentOrLast().ifPresent(job -> status.put("job", job.snapshot()));
+        if (coverPrefetcher.isEnabled()) {
+            status.put("coverPrefetch", Map.of(
+                "queued", coverPrefetcher.getQueued(),
+                "downloaded", coverPrefetcher.getDownloaded(),
+                "failed", coverPrefetcher.getFailed(),
+                "dropped", coverPrefetcher.getDropped()
+            ));
+        }
         
+        ImportResult lastImportResult = jobManager.lastFinished().map(ImportJob::getResult).orElse(null);
         if (lastImportResult != null) {
             status.put("lastResult", Map.of(
                 "totalFetched", lastImportResult.getTotalFetched(),
@@ -147,7 +354,9 @@ public class ImportController {
                 "skipped", lastImportResult.getSkipped(),
                 "errors", lastImportResult.getErrors(),
                 "lastCursor", lastImportResult.getLastCreatedAt() != null ? 
-                    lastImportResult.getLastCreatedAt() : "N/A"
+                    lastImportResult.getLastCreatedAt() : "N/A",
+                "lastUpdatedAt", lastImportResult.getLastUpdatedAt() != null ?
+                    lastImportResult.getLastUpdatedAt() : "N/A"
             ));
         } else {
             status.put("lastResult", "No import has been run yet");
@@ -159,11 +368,12 @@ public class ImportController {
     /**
      * POST /admin/import/stop
      * Request to stop the current import
-     * Note: Current batch will complete before stopping
+     * Note: The import stops at the next page boundary; pages already fetched are still saved
      */
     @PostMapping("/stop")
     public ResponseEntity<Map<String, String>> stopImport() {
-        if (!importInProgress) {
+        Optional<ImportJob> cancelled = jobManager.cancel();
+        if (cancelled.isEmpty()) {
             return ResponseEntity.badRequest()
                 .body(Map.of(
                     "status", "error",
@@ -173,7 +383,8 @@ public class ImportController {
         
         return ResponseEntity.ok(Map.of(
             "status", "acknowledged",
-            "message", "Stop request received. Current batch will complete before stopping. Note the lastCursor from /status to resume later."
+            "jobId", String.valueOf(cancelled.get().getId()),
+            "message", "Stop requested. In-flight pages will be saved before the job stops. POST /admin/import/resume to continue later."
         ));
     }
 }
@@ -0,0 +1,43 @@
+package com.mangawatch.importer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Picks an import back up after the application went down in the middle of it.
+ * A run still marked RUNNING at startup can only mean the previous process died,
+ * so it's resumed from its last committed checkpoint. Cancelled or failed runs are
+ * left alone; those can be resumed by hand through /admin/import/resume.
+ */
+@Component
+@ConditionalOnProperty(name = "mangadex.import.auto-resume", havingValue = "true", matchIfMissing = true)
+public class ImportCrashRecovery {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportCrashRecovery.class);
+
+    private final MangadexImporter importer;
+    private final ImportJobManager jobManager;
+
+    public ImportCrashRecovery(MangadexImporter importer, ImportJobManager jobManager) {
+        this.importer = importer;
+        this.jobManager = jobManager;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedImport() {
+        try {
+            importer.findResumableRun()
+                .filter(run -> run.state() == ImportCheckpointStore.RunState.RUNNING)
+                .ifPresent(run -> {
+                    ImportJob job = jobManager.start("resume", importer::resumeLastRun);
+                    log.info("Import run {} was interrupted, resuming it as job {}", run.id(), job.getId());
+                });
+        } catch (RuntimeException e) {
+            log.error("Could not check for an interrupted import", e);
+        }
+    }
+}
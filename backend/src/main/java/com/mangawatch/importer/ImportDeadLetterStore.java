@@ -0,0 +1,174 @@
+package com.mangawatch.importer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mangawatch.dto.MangadexResponse;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Manga that failed to import, with why and what MangaDex sent, so they can be retried
+ * by id instead of re-walking the catalog.
+ *
+ * A title that fails again just bumps its attempt count; one that gets in on retry is removed.
+ */
+@Component
+public class ImportDeadLetterStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportDeadLetterStore.class);
+
+    public static final String STAGE_FETCH = "fetch";
+    public static final String STAGE_TRANSFORM = "transform";
+    public static final String STAGE_PERSIST = "persist";
+
+    /**
+     * One failed manga. Payload is the MangaDex element as JSON, as it was sent, or null.
+     */
+    public record DeadLetter(String dexId, String stage, String reason, String payload, int attempts,
+                             LocalDateTime firstFailedAt, LocalDateTime lastFailedAt) {}
+
+    // a payload that doesn't arrive on a later attempt doesn't wipe the one already stored
+    private static final String UPSERT_SQL =
+        "INSERT INTO import_dead_letter (dex_id, stage, reason, payload, first_failed_at, last_failed_at) " +
+        "SELECT f.dex_id, f.stage, f.reason, f.payload::jsonb, now(), now() " +
+        "FROM unnest(?::text[], ?::text[], ?::text[], ?::text[]) AS f(dex_id, stage, reason, payload) " +
+        "ON CONFLICT (dex_id) DO UPDATE SET " +
+        "stage = EXCLUDED.stage, " +
+        "reason = EXCLUDED.reason, " +
+        "payload = COALESCE(EXCLUDED.payload, import_dead_letter.payload), " +
+        "attempts = import_dead_letter.attempts + 1, " +
+        "last_failed_at = EXCLUDED.last_failed_at";
+
+    private static final String SELECT_COLUMNS =
+        "SELECT dex_id, stage, reason, payload::text AS payload, attempts, first_failed_at, last_failed_at " +
+        "FROM import_dead_letter ";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public ImportDeadLetterStore(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Record a failure for one manga
+     *
+     * @param source What MangaDex sent for it, or null if nothing arrived
+     */
+    public boolean record(String dexId, String stage, String reason, MangadexResponse.MangadexManga source) {
+        return record(Collections.singletonMap(dexId, source), stage, reason);
+    }
+
+    /**
+     * Record the same failure for several manga in one statement.
+     * Never throws: the import carries on and the failure is still counted in the job result.
+     *
+     * @param failed dexId -> what MangaDex sent for it (null if nothing arrived)
+     * @return whether the entries were written
+     */
+    public boolean record(Map<String, MangadexResponse.MangadexManga> failed, String stage, String reason) {
+        if (failed.isEmpty()) {
+            return true;
+        }
+        int n = failed.size();
+        String[] ids = new String[n];
+        String[] stages = new String[n];
+        String[] reasons = new String[n];
+        String[] payloads = new String[n];
+        int i = 0;
+        for (Map.Entry<String, MangadexResponse.MangadexManga> entry : failed.entrySet()) {
+            ids[i] = entry.getKey();
+            stages[i] = stage;
+            reasons[i] = reason;
+            payloads[i] = toJson(entry.getValue());
+            i++;
+        }
+
+        try {
+            jdbcTemplate.update(UPSERT_SQL, ps -> {
+                ps.setArray(1, ps.getConnection().createArrayOf("text", ids));
+                ps.setArray(2, ps.getConnection().createArrayOf("text", stages));
+                ps.setArray(3, ps.getConnection().createArrayOf("text", reasons));
+                ps.setArray(4, ps.getConnection().createArrayOf("text", payloads));
+            });
+            return true;
+        } catch (Exception e) {
+            log.error("Failed to record {} dead-lettered manga ({}: {})", n, stage, reason, e);
+            return false;
+        }
+    }
+
+    /**
+     * Drop the entries for manga that have now been imported
+     */
+    public void resolve(Collection<String> dexIds) {
+        if (dexIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update("DELETE FROM import_dead_letter WHERE dex_id = ANY(?::text[])",
+            ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", dexIds.toArray())));
+    }
+
+    /**
+     * Ids waiting for a retry, oldest failure first
+     */
+    public List<String> pendingIds(int limit) {
+        return jdbcTemplate.queryForList(
+            "SELECT dex_id FROM import_dead_letter ORDER BY last_failed_at, dex_id LIMIT ?", String.class, limit);
+    }
+
+    public int count() {
+        Integer count = jdbcTemplate.queryForObject("SELECT count(*) FROM import_dead_letter", Integer.class);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * A page of entries, most recent failure first. Payloads are left out; see {@link #find}.
+     */
+    public List<DeadLetter> list(int limit, int offset) {
+        return jdbcTemplate.query(
+            "SELECT dex_id, stage, reason, NULL AS payload, attempts, first_failed_at, last_failed_at " +
+            "FROM import_dead_letter ORDER BY last_failed_at DESC, dex_id LIMIT ? OFFSET ?",
+            (rs, rowNum) -> map(rs), limit, offset);
+    }
+
+    public Optional<DeadLetter> find(String dexId) {
+        return jdbcTemplate.query(SELECT_COLUMNS + "WHERE dex_id = ?", (rs, rowNum) -> map(rs), dexId)
+            .stream()
+            .findFirst();
+    }
+
+    private static DeadLetter map(java.sql.ResultSet rs) throws java.sql.SQLException {
+        Timestamp first = rs.getTimestamp("first_failed_at");
+        Timestamp last = rs.getTimestamp("last_failed_at");
+        return new DeadLetter(
+            rs.getString("dex_id"),
+            rs.getString("stage"),
+            rs.getString("reason"),
+            rs.getString("payload"),
+            rs.getInt("attempts"),
+            first != null ? first.toLocalDateTime() : null,
+            last != null ? last.toLocalDateTime() : null);
+    }
+
+    private String toJson(MangadexResponse.MangadexManga source) {
+        if (source == null || source.getId() == null) {
+            return null;
+        }
+        try {
+            // the element as sent; the DTO drops every field it doesn't map
+            return objectMapper.writeValueAsString(source.getRaw() != null ? source.getRaw() : source);
+        } catch (JsonProcessingException e) {
+            log.warn("Couldn't serialize payload of manga {}", source.getId(), e);
+            return null;
+        }
+    }
+}
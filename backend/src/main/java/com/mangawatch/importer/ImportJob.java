@@ -0,0 +1,247 @@
+package com.mangawatch.importer;
+
+import com.mangawatch.importer.MangadexImporter.ImportResult;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One run of the importer (full import, resume, delta sync, ...).
+ *
+ * Holds the live {@link ImportResult} counters plus progress and per-stage timings,
+ * and carries the cooperative cancellation flag the fetch loop checks between pages.
+ */
+public class ImportJob {
+
+    public enum State { RUNNING, CANCELLING, COMPLETED, CANCELLED, FAILED }
+
+    /**
+     * Busy time of one pipeline stage
+     */
+    public static class StageStats {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private volatile int workers = 1;
+
+        public void record(long elapsedNanos) {
+            calls.increment();
+            nanos.add(elapsedNanos);
+        }
+
+        void setWorkers(int workers) { this.workers = Math.max(1, workers); }
+
+        public long getCalls() { return calls.sum(); }
+        public long getBusyNanos() { return nanos.sum(); }
+
+        double averageMillis() {
+            long n = calls.sum();
+            return n == 0 ? 0 : nanos.sum() / 1_000_000d / n;
+        }
+
+        /** Fraction of the stage's worker capacity spent busy, 0..1 */
+        double utilization(long wallNanos) {
+            return wallNanos <= 0 ? 0 : Math.min(1, nanos.sum() / (double) wallNanos / workers);
+        }
+    }
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    private final int id;
+    private final String type;
+    private final Instant startedAt = Instant.now();
+    private final long startedNanos = System.nanoTime();
+    private final ImportResult result = new ImportResult();
+
+    private volatile State state = State.RUNNING;
+    private volatile boolean cancelRequested;
+    private volatile Instant finishedAt;
+    private volatile long finishedNanos;
+    private volatile String failure;
+
+    private final AtomicInteger pagesFetched = new AtomicInteger();
+    private volatile String currentCursor;
+    private volatile int currentOffset;
+    private volatile Integer remainingEstimate;
+    private volatile Integer expectedTotal;
+
+    private final StageStats fetchStage = new StageStats();
+    private final StageStats backpressureStage = new StageStats();
+    private final StageStats transformStage = new StageStats();
+    private final StageStats persistStage = new StageStats();
+
+    public ImportJob(String type) {
+        this.id = SEQUENCE.incrementAndGet();
+        this.type = type;
+    }
+
+    // ========== lifecycle ==========
+
+    /**
+     * Ask the import to stop. The fetch loop stops at the next page boundary and
+     * pages already handed to the pipeline are still saved.
+     */
+    public void requestCancel() {
+        cancelRequested = true;
+        if (state == State.RUNNING) {
+            state = State.CANCELLING;
+        }
+    }
+
+    public boolean isCancelRequested() { return cancelRequested; }
+
+    public boolean isActive() {
+        return state == State.RUNNING || state == State.CANCELLING;
+    }
+
+    void markFinished() {
+        finish(cancelRequested ? State.CANCELLED : State.COMPLETED, null);
+    }
+
+    void markFailed(Throwable error) {
+        // a StackOverflowError and the like come without a message
+        finish(State.FAILED, error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName());
+    }
+
+    private void finish(State finalState, String failure) {
+        this.failure = failure;
+        this.finishedNanos = System.nanoTime();
+        this.finishedAt = Instant.now();
+        this.state = finalState;
+    }
+
+    // ========== progress ==========
+
+    /**
+     * Called by the fetch loop after each page has been handed off
+     */
+    void recordPage(String cursor, int offset, Integer total) {
+        pagesFetched.incrementAndGet();
+        currentCursor = cursor;
+        currentOffset = offset;
+        if (total != null) {
+            // total counts everything from the current cursor onwards
+            remainingEstimate = Math.max(0, total - offset);
+        }
+    }
+
+    /**
+     * Size of the whole walk when known up front (e.g. a sharded full import), used for the ETA
+     */
+    void setExpectedTotal(Integer total) {
+        expectedTotal = total;
+    }
+
+    void setWorkerCounts(int fetchWorkers, int transformWorkers, int persistWorkers) {
+        fetchStage.setWorkers(fetchWorkers);
+        transformStage.setWorkers(transformWorkers);
+        persistStage.setWorkers(persistWorkers);
+    }
+
+    public StageStats fetchStage() { return fetchStage; }
+    public StageStats backpressureStage() { return backpressureStage; }
+    public StageStats transformStage() { return transformStage; }
+    public StageStats persistStage() { return persistStage; }
+
+    // ========== getters ==========
+
+    public int getId() { return id; }
+    public String getType() { return type; }
+    public State getState() { return state; }
+    public Instant getStartedAt() { return startedAt; }
+    public Instant getFinishedAt() { return finishedAt; }
+    public String getFailure() { return failure; }
+    public ImportResult getResult() { return result; }
+    public int getPagesFetched() { return pagesFetched.get(); }
+    public String getCurrentCursor() { return currentCursor; }
+    public int getCurrentOffset() { return currentOffset; }
+
+    private long elapsedNanos() {
+        return (isActive() ? System.nanoTime() : finishedNanos) - startedNanos;
+    }
+
+    public double getRowsPerSecond() {
+        long elapsed = elapsedNanos();
+        return elapsed <= 0 ? 0 : result.getTotalFetched() / (elapsed / 1_000_000_000d);
+    }
+
+    /**
+     * Rough time left based on the API's reported total and the current rate, if known
+     */
+    public Duration getEta() {
+        Integer expected = expectedTotal;
+        Integer remaining = expected != null ? Integer.valueOf(Math.max(0, expected - result.getTotalFetched())) : remainingEstimate;
+        double rate = getRowsPerSecond();
+        if (remaining == null || rate <= 0 || !isActive()) {
+            return null;
+        }
+        return Duration.ofSeconds((long) (remaining / rate));
+    }
+
+    /**
+     * Which stage is closest to saturation: "network" when the fetcher is busy fetching,
+     * "database" when persist workers are (or the fetcher is mostly blocked on a full pipeline).
+     */
+    public String getBottleneck() {
+        long wall = elapsedNanos();
+        double network = fetchStage.utilization(wall);
+        double transform = transformStage.utilization(wall);
+        double database = Math.max(persistStage.utilization(wall), backpressureStage.utilization(wall));
+
+        if (network >= transform && network >= database) {
+            return "network";
+        }
+        return database >= transform ? "database" : "transform";
+    }
+
+    /**
+     * JSON-friendly view for the admin endpoints
+     */
+    public Map<String, Object> snapshot() {
+        long wall = elapsedNanos();
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("id", id);
+        view.put("type", type);
+        view.put("state", state);
+        view.put("startedAt", startedAt.toString());
+        view.put("finishedAt", finishedAt != null ? finishedAt.toString() : null);
+        view.put("elapsedSeconds", wall / 1_000_000_000L);
+        if (failure != null) {
+            view.put("failure", failure);
+        }
+
+        view.put("pagesFetched", pagesFetched.get());
+        view.put("totalFetched", result.getTotalFetched());
+        view.put("newInserted", result.getNewInserted());
+        view.put("updated", result.getUpdated());
+        view.put("skipped", result.getSkipped());
+        view.put("errors", result.getErrors());
+        view.put("rowsPerSecond", Math.round(getRowsPerSecond() * 10) / 10d);
+        view.put("currentCursor", currentCursor != null ? currentCursor : "START");
+        view.put("currentOffset", currentOffset);
+        Integer expected = expectedTotal;
+        view.put("remainingEstimate", expected != null ? Math.max(0, expected - result.getTotalFetched()) : remainingEstimate);
+        Duration eta = getEta();
+        view.put("etaSeconds", eta != null ? eta.getSeconds() : null);
+
+        Map<String, Object> stages = new LinkedHashMap<>();
+        stages.put("fetch", stageView(fetchStage, wall));
+        stages.put("fetchBlockedOnPipeline", stageView(backpressureStage, wall));
+        stages.put("transform", stageView(transformStage, wall));
+        stages.put("persist", stageView(persistStage, wall));
+        view.put("stages", stages);
+        view.put("bottleneck", getBottleneck());
+        return view;
+    }
+
+    private static Map<String, Object> stageView(StageStats stats, long wall) {
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("calls", stats.getCalls());
+        view.put("avgMillis", Math.round(stats.averageMillis() * 10) / 10d);
+        view.put("utilization", Math.round(stats.utilization(wall) * 100) / 100d);
+        return view;
+    }
+}
@@ -0,0 +1,114 @@
+package com.mangawatch.importer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.mangawatch.importer.MangadexImporter.ImportResult;
+
+import jakarta.annotation.PreDestroy;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Runs import jobs one at a time on a single managed thread.
+ *
+ * Every entry point (admin endpoints, the nightly sync) goes through here, so there's
+ * one place that knows whether an import is running, how far it's got, and how to stop it.
+ */
+@Component
+public class ImportJobManager {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportJobManager.class);
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "import-job");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile ImportJob currentJob;
+    private volatile ImportJob lastJob;
+
+    /**
+     * Start a job in the background.
+     *
+     * @param type Label shown in status output (full, resume, sync, ...)
+     * @param work The import to run; receives the job for progress and cancellation
+     * @return the started job
+     * @throws IllegalStateException if another job is still running
+     */
+    public synchronized ImportJob start(String type, Function<ImportJob, ImportResult> work) {
+        if (isRunning()) {
+            throw new IllegalStateException("Import already in progress (job " + currentJob.getId() + ")");
+        }
+
+        ImportJob job = new ImportJob(type);
+        currentJob = job;
+
+        executor.execute(() -> {
+            try {
+                ImportResult result = work.apply(job);
+                job.markFinished();
+                log.info("Import job {} ({}) finished as {}: {}", job.getId(), type, job.getState(), result);
+            } catch (Throwable e) {
+                // Errors too: a job left RUNNING would refuse every later start()
+                job.markFailed(e);
+                log.error("Import job {} ({}) failed", job.getId(), type, e);
+            } finally {
+                lastJob = job;
+            }
+        });
+
+        log.info("Started import job {} ({})", job.getId(), type);
+        return job;
+    }
+
+    public boolean isRunning() {
+        ImportJob job = currentJob;
+        return job != null && job.isActive();
+    }
+
+    /**
+     * The running job, or the most recent one if nothing is running
+     */
+    public Optional<ImportJob> currentOrLast() {
+        ImportJob job = currentJob;
+        return Optional.ofNullable(job != null ? job : lastJob);
+    }
+
+    /**
+     * The most recently finished job
+     */
+    public Optional<ImportJob> lastFinished() {
+        return Optional.ofNullable(lastJob);
+    }
+
+    /**
+     * Request cooperative cancellation of the running job.
+     *
+     * @return the job being cancelled, or empty if nothing is running
+     */
+    public Optional<ImportJob> cancel() {
+        ImportJob job = currentJob;
+        if (job == null || !job.isActive()) {
+            return Optional.empty();
+        }
+        job.requestCancel();
+        log.info("Cancellation requested for import job {}", job.getId());
+        return Optional.of(job);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        cancel();
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.mangawatch.importer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mangawatch.dto.MangadexResponse;
+import com.mangawatch.model.Manga;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Staged fetch -> transform -> persist pipeline used by the importer.
+ *
+ * The fetching thread hands raw pages to {@link #submit}, transform workers turn them
+ * into entities and persist workers write them. Both hand-offs go through bounded queues,
+ * so a slow database blocks the transform stage, which in turn blocks the fetcher.
+ * At most (queue capacity + workers) pages are held in memory per stage.
+ *
+ * A page can carry a callback that runs once it has been through the persist stage, which
+ * is how the importer knows what has been committed. A stage that throws hands the page to
+ * the failure handler (which dead-letters it); only if that fails too is the page lost, and
+ * then the page's onLost callback runs instead, so it's never counted as committed.
+ */
+class ImportPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportPipeline.class);
+
+    /**
+     * Takes a page a stage threw on; returns whether it was accounted for (dead-lettered)
+     */
+    interface FailureHandler {
+        boolean pageFailed(List<MangadexResponse.MangadexManga> items, String stage, RuntimeException error);
+    }
+
+    private record Page(List<MangadexResponse.MangadexManga> items, Runnable onPersisted, Runnable onLost) {}
+    // rows keep the page they came from, so a failed write can report what MangaDex sent
+    private record Batch(List<Manga> rows, List<MangadexResponse.MangadexManga> source, Runnable onPersisted,
+                         Runnable onLost) {}
+
+    // poison pills used to shut workers down once all real work is queued
+    private static final Page END_OF_PAGES = new Page(List.of(), null, null);
+    private static final Batch END_OF_BATCHES = new Batch(List.of(), List.of(), null, null);
+
+    private final BlockingQueue<Page> pageQueue;
+    private final BlockingQueue<Batch> persistQueue;
+
+    private final ExecutorService transformPool;
+    private final ExecutorService persistPool;
+
+    private final int transformWorkers;
+    private final int persistWorkers;
+
+    private final AtomicInteger transformersRunning;
+    private final FailureHandler onFailure;
+
+    ImportPipeline(
+            int transformWorkers,
+            int persistWorkers,
+            int queueCapacity,
+            Function<List<MangadexResponse.MangadexManga>, List<Manga>> transform,
+            BiConsumer<List<Manga>, List<MangadexResponse.MangadexManga>> persist,
+            FailureHandler onFailure) {
+        this.onFailure = onFailure;
+        this.transformWorkers = Math.max(1, transformWorkers);
+        this.persistWorkers = Math.max(1, persistWorkers);
+        this.pageQueue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.persistQueue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.transformersRunning = new AtomicInteger(this.transformWorkers);
+
+        this.transformPool = Executors.newFixedThreadPool(this.transformWorkers, namedThreads("import-transform"));
+        this.persistPool = Executors.newFixedThreadPool(this.persistWorkers, namedThreads("import-persist"));
+
+        for (int i = 0; i < this.transformWorkers; i++) {
+            transformPool.execute(() -> runTransformer(transform));
+        }
+        for (int i = 0; i < this.persistWorkers; i++) {
+            persistPool.execute(() -> runPersister(persist));
+        }
+    }
+
+    /**
+     * Queue a fetched page for transformation. Blocks while the pipeline is full.
+     */
+    void submit(List<MangadexResponse.MangadexManga> page) throws InterruptedException {
+        submit(page, null, null);
+    }
+
+    /**
+     * Queue a fetched page, running onPersisted once it has been saved or dead-lettered, or
+     * onLost if it could be neither. Pages are processed concurrently, so callbacks don't
+     * necessarily run in submission order.
+     */
+    void submit(List<MangadexResponse.MangadexManga> page, Runnable onPersisted, Runnable onLost)
+            throws InterruptedException {
+        if (page == null || page.isEmpty()) {
+            done(onPersisted);
+            return;
+        }
+        // copy so the caller can't mutate the page after it's been handed off
+        pageQueue.put(new Page(new ArrayList<>(page), onPersisted, onLost));
+    }
+
+    /**
+     * Signal that no more pages will be submitted and wait until everything queued
+     * so far has been transformed and persisted.
+     */
+    void finish() throws InterruptedException {
+        for (int i = 0; i < transformWorkers; i++) {
+            pageQueue.put(END_OF_PAGES);
+        }
+        transformPool.shutdown();
+        persistPool.shutdown();
+        // workers exit on their own once they see the poison pills
+        while (!persistPool.awaitTermination(5, TimeUnit.SECONDS)) {
+            log.debug("Waiting for import pipeline to drain (pages queued: {}, batches queued: {})",
+                pageQueue.size(), persistQueue.size());
+        }
+        transformPool.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Abort without draining. Used when the fetching thread is interrupted.
+     */
+    void abort() {
+        transformPool.shutdownNow();
+        persistPool.shutdownNow();
+        pageQueue.clear();
+        persistQueue.clear();
+    }
+
+    private void runTransformer(Function<List<MangadexResponse.MangadexManga>, List<Manga>> transform) {
+        try {
+            while (true) {
+                Page page = pageQueue.take();
+                if (page == END_OF_PAGES) {
+                    break;
+                }
+                List<Manga> batch;
+                try {
+                    batch = transform.apply(page.items());
+                } catch (RuntimeException e) {
+                    log.error("Transform stage failed for page of {} manga", page.items().size(), e);
+                    failed(page.items(), ImportDeadLetterStore.STAGE_TRANSFORM, e, page.onPersisted(), page.onLost());
+                    continue;
+                }
+                if (batch != null && !batch.isEmpty()) {
+                    persistQueue.put(new Batch(batch, page.items(), page.onPersisted(), page.onLost()));
+                } else {
+                    done(page.onPersisted());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // last transformer out tells the persisters to stop
+            if (transformersRunning.decrementAndGet() == 0) {
+                signalPersistersToStop();
+            }
+        }
+    }
+
+    private void runPersister(BiConsumer<List<Manga>, List<MangadexResponse.MangadexManga>> persist) {
+        try {
+            while (true) {
+                Batch batch = persistQueue.take();
+                if (batch == END_OF_BATCHES) {
+                    break;
+                }
+                try {
+                    persist.accept(batch.rows(), batch.source());
+                } catch (RuntimeException e) {
+                    log.error("Persist stage failed for batch of {} manga", batch.rows().size(), e);
+                    failed(batch.source(), ImportDeadLetterStore.STAGE_PERSIST, e, batch.onPersisted(), batch.onLost());
+                    continue;
+                }
+                done(batch.onPersisted());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // a page only counts as through the pipeline once it's been dead-lettered
+    private void failed(List<MangadexResponse.MangadexManga> items, String stage, RuntimeException error,
+                        Runnable onPersisted, Runnable onLost) {
+        boolean recorded;
+        try {
+            recorded = onFailure.pageFailed(items, stage, error);
+        } catch (RuntimeException e) {
+            log.error("Couldn't dead-letter a page of {} manga", items.size(), e);
+            recorded = false;
+        }
+        done(recorded ? onPersisted : onLost);
+    }
+
+    private static void done(Runnable onPersisted) {
+        if (onPersisted == null) {
+            return;
+        }
+        try {
+            onPersisted.run();
+        } catch (RuntimeException e) {
+            log.error("Import pipeline callback failed", e);
+        }
+    }
+
+    private void signalPersistersToStop() {
+        try {
+            for (int i = 0; i < persistWorkers; i++) {
+                persistQueue.put(END_OF_BATCHES);
+            }
+        } catch (InterruptedException e) {
+            // only happens on abort(), where the persist pool is being torn down anyway
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,405 @@
+package com.mangawatch.importer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.mangawatch.model.Manga;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Set-based writer for imported manga.
+ *
+ * A whole page is written in a handful of statements instead of one SELECT plus one
+ * INSERT/UPDATE per title (and a delete + re-insert of each title's collections):
+ * - one INSERT ... ON CONFLICT (dex_id) for the manga rows, fed by unnest() over arrays
+ * - per collection (manga_alt_titles, manga_genres): a plain INSERT for new manga, and for
+ *   updated manga a DELETE of elements that went away plus an INSERT of ones that are new,
+ *   so an unchanged alt title or genre is never rewritten
+ *
+ * Keeps the same update semantics the importer had with JPA: cover_url and rating are
+ * only written for new rows, everything else is refreshed on re-import.
+ * Existing rows whose content_hash matches the incoming fingerprint are left untouched
+ * (no row update, no collection rewrite) and reported as skipped. Rows that were written get
+ * their search_document rebuilt in one more statement, and their ids are published as a
+ * {@link MangaCatalogChangedEvent}.
+ *
+ * With a {@link DexIdIndex} loaded (see {@link #loadIndex()}), titles already in the table go
+ * straight to an UPDATE by primary key and only unknown ones take the INSERT ... ON CONFLICT
+ * path. The index is filled once per import and fed the ids of rows as their transaction
+ * commits; a manga deleted mid-import stays deleted until the next import reloads it.
+ */
+@Component
+public class MangaBulkWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(MangaBulkWriter.class);
+
+    // xmax = 0 is only true for rows this statement inserted, which lets one
+    // round-trip report inserted vs updated without a prior existence check.
+    // Unchanged rows fail the WHERE, so they're neither written nor returned.
+    private static final String UPSERT_MANGA_SQL =
+        "INSERT INTO manga (dex_id, title, author, release_year, status, rating, description, cover_url, content_hash) " +
+        "SELECT * FROM unnest(?::text[], ?::text[], ?::text[], ?::int[], ?::text[], ?::float8[], ?::text[], ?::text[], ?::text[]) " +
+        "ON CONFLICT (dex_id) DO UPDATE SET " +
+        "title = EXCLUDED.title, " +
+        "author = EXCLUDED.author, " +
+        "release_year = EXCLUDED.release_year, " +
+        "status = EXCLUDED.status, " +
+        "description = EXCLUDED.description, " +
+        "content_hash = EXCLUDED.content_hash " +
+        "WHERE manga.content_hash IS DISTINCT FROM EXCLUDED.content_hash " +
+        "RETURNING id, dex_id, (xmax = 0) AS inserted";
+
+    // titles the index already knows: no speculative insert, just a primary key update
+    private static final String UPDATE_KNOWN_SQL =
+        "UPDATE manga m SET " +
+        "title = u.title, " +
+        "author = u.author, " +
+        "release_year = u.release_year, " +
+        "status = u.status, " +
+        "description = u.description, " +
+        "content_hash = u.content_hash " +
+        "FROM unnest(?::bigint[], ?::text[], ?::text[], ?::int[], ?::text[], ?::text[], ?::text[]) " +
+        "AS u(id, title, author, release_year, status, description, content_hash) " +
+        "WHERE m.id = u.id AND m.content_hash IS DISTINCT FROM u.content_hash " +
+        "RETURNING m.id, m.dex_id, false AS inserted";
+
+    // after the collections are written, so alt titles are current; see V17
+    private static final String REFRESH_SEARCH_DOCUMENT_SQL =
+        "UPDATE manga m SET search_document = manga_search_document(m.title, " +
+        "(SELECT string_agg(a.alt_title, ' ') FROM manga_alt_titles a WHERE a.manga_id = m.id), " +
+        "m.author, m.description) " +
+        "WHERE m.id = ANY(?::bigint[])";
+
+    private static final String SCAN_IDS_SQL = "SELECT id, dex_id FROM manga WHERE dex_id IS NOT NULL";
+
+    private static final int SCAN_FETCH_SIZE = 10_000;
+
+    private static final List<CollectionTable> COLLECTIONS = List.of(
+        new CollectionTable("manga_alt_titles", "alt_title", Manga::getAltTitles),
+        new CollectionTable("manga_genres", "genre", Manga::getGenres));
+
+    /**
+     * An element collection table and the SQL to write it.
+     * The diff statements take (owner ids, element values) arrays describing the full new contents.
+     */
+    private record CollectionTable(
+            Function<Manga, List<String>> values, String insertSql, String deleteRemovedSql, String insertAddedSql) {
+        CollectionTable(String table, String column, Function<Manga, List<String>> values) {
+            this(values,
+                "INSERT INTO " + table + " (manga_id, " + column + ") " +
+                "SELECT * FROM unnest(?::bigint[], ?::text[])",
+
+                "DELETE FROM " + table + " t WHERE t.manga_id = ANY(?::bigint[]) " +
+                "AND NOT EXISTS (SELECT 1 FROM unnest(?::bigint[], ?::text[]) AS n(manga_id, val) " +
+                "WHERE n.manga_id = t.manga_id AND n.val = t." + column + ")",
+
+                "INSERT INTO " + table + " (manga_id, " + column + ") " +
+                "SELECT n.manga_id, n.val FROM unnest(?::bigint[], ?::text[]) AS n(manga_id, val) " +
+                "WHERE NOT EXISTS (SELECT 1 FROM " + table + " t " +
+                "WHERE t.manga_id = n.manga_id AND t." + column + " = n.val)");
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher events;
+
+    // null until an import loads it, or if loading failed
+    private volatile DexIdIndex index;
+
+    public MangaBulkWriter(JdbcTemplate jdbcTemplate, ApplicationEventPublisher events) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.events = events;
+    }
+
+    /**
+     * Rebuild the dexId -> id index from one streaming scan of manga(id, dex_id).
+     * Called at the start of every import; if it fails, upserts fall back to ON CONFLICT for everything.
+     */
+    @Transactional(readOnly = true)
+    public void loadIndex() {
+        long start = System.nanoTime();
+        try {
+            Integer estimate = jdbcTemplate.queryForObject(
+                "SELECT GREATEST(reltuples, 0)::int FROM pg_class WHERE oid = 'manga'::regclass", Integer.class);
+            DexIdIndex fresh = new DexIdIndex(estimate != null ? estimate : 0);
+            // a fetch size inside a transaction makes the driver stream instead of buffering every row
+            jdbcTemplate.query(connection -> {
+                PreparedStatement ps = connection.prepareStatement(SCAN_IDS_SQL);
+                ps.setFetchSize(SCAN_FETCH_SIZE);
+                return ps;
+            }, rs -> {
+                fresh.put(rs.getString(2), rs.getLong(1));
+            });
+            index = fresh;
+            log.info("Loaded dexId index of {} manga in {} ms", fresh.size(), (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            index = null;
+            log.warn("Couldn't load the dexId index, every row will go through ON CONFLICT", e);
+        }
+    }
+
+    /**
+     * Outcome of a bulk upsert
+     */
+    public record UpsertResult(int inserted, int updated, int skipped, Set<String> insertedDexIds) {}
+
+    private record UpsertedRow(long id, String dexId, boolean inserted) {}
+
+    /**
+     * Insert or update a batch of transformed manga, keyed by dexId, in one transaction.
+     */
+    @Transactional
+    public UpsertResult upsert(List<Manga> batch) {
+        // ON CONFLICT can't touch the same row twice in one statement, so collapse
+        // duplicate dexIds (last one wins). Sorting keeps lock order stable across
+        // concurrent persist workers.
+        Map<String, Manga> byDexId = new TreeMap<>();
+        for (Manga manga : batch) {
+            if (manga.getDexId() != null) {
+                byDexId.put(manga.getDexId(), manga);
+            }
+        }
+        if (byDexId.isEmpty()) {
+            return new UpsertResult(0, 0, batch.size(), Set.of());
+        }
+
+        List<Manga> rows = new ArrayList<>(byDexId.values());
+        DexIdIndex known = index;
+        List<UpsertedRow> upserted = new ArrayList<>();
+        if (known == null) {
+            upserted.addAll(upsertRows(rows));
+        } else {
+            List<Manga> newRows = new ArrayList<>();
+            List<Manga> knownRows = new ArrayList<>();
+            long[] knownIds = new long[rows.size()];
+            for (Manga manga : rows) {
+                long id = known.get(manga.getDexId());
+                if (id != 0) {
+                    knownIds[knownRows.size()] = id;
+                    knownRows.add(manga);
+                } else {
+                    newRows.add(manga);
+                }
+            }
+            if (!knownRows.isEmpty()) {
+                upserted.addAll(updateKnownRows(knownRows, knownIds));
+            }
+            if (!newRows.isEmpty()) {
+                List<UpsertedRow> added = upsertRows(newRows);
+                upserted.addAll(added);
+                indexAfterCommit(known, added);
+            }
+        }
+
+        Map<String, Long> insertedIds = new HashMap<>();
+        Map<String, Long> updatedIds = new HashMap<>();
+        for (UpsertedRow row : upserted) {
+            (row.inserted() ? insertedIds : updatedIds).put(row.dexId(), row.id());
+        }
+        int inserted = insertedIds.size();
+
+        for (CollectionTable table : COLLECTIONS) {
+            insertCollection(rows, insertedIds, table);
+            diffCollection(rows, updatedIds, table);
+        }
+        refreshSearchDocuments(upserted);
+        if (!upserted.isEmpty()) {
+            Set<Long> written = new HashSet<>(insertedIds.values());
+            written.addAll(updatedIds.values());
+            events.publishEvent(new MangaCatalogChangedEvent(written));
+        }
+
+        // unchanged rows plus any duplicates collapsed above
+        int skipped = batch.size() - upserted.size();
+        log.debug("Bulk upserted {} manga ({} new, {} unchanged)", upserted.size(), inserted, skipped);
+        return new UpsertResult(inserted, upserted.size() - inserted, skipped, insertedIds.keySet());
+    }
+
+    /**
+     * Rebuild the full-text document of rows this batch wrote. Unchanged rows keep theirs.
+     */
+    private void refreshSearchDocuments(List<UpsertedRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        Long[] ids = rows.stream().map(UpsertedRow::id).toArray(Long[]::new);
+        jdbcTemplate.update(REFRESH_SEARCH_DOCUMENT_SQL, ps -> ps.setArray(1, bigintArray(ps, ids)));
+    }
+
+    /**
+     * Make rows that went through ON CONFLICT known to the index, but only once they're
+     * committed; an entry for a rolled-back insert would turn the row's retry into a no-op update
+     */
+    private static void indexAfterCommit(DexIdIndex known, List<UpsertedRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        Runnable add = () -> rows.forEach(row -> known.put(row.dexId(), row.id()));
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            add.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                add.run();
+            }
+        });
+    }
+
+    private List<UpsertedRow> updateKnownRows(List<Manga> rows, long[] knownIds) {
+        int n = rows.size();
+        Long[] ids = new Long[n];
+        String[] titles = new String[n];
+        String[] authors = new String[n];
+        Integer[] years = new Integer[n];
+        String[] statuses = new String[n];
+        String[] descriptions = new String[n];
+        String[] contentHashes = new String[n];
+
+        for (int i = 0; i < n; i++) {
+            Manga manga = rows.get(i);
+            ids[i] = knownIds[i];
+            titles[i] = manga.getTitle();
+            authors[i] = manga.getAuthor();
+            years[i] = manga.getYear();
+            statuses[i] = manga.getStatus();
+            descriptions[i] = manga.getDescription();
+            contentHashes[i] = manga.getContentHash();
+        }
+
+        return jdbcTemplate.query(UPDATE_KNOWN_SQL, ps -> {
+            Connection connection = ps.getConnection();
+            ps.setArray(1, bigintArray(ps, ids));
+            ps.setArray(2, connection.createArrayOf("text", titles));
+            ps.setArray(3, connection.createArrayOf("text", authors));
+            ps.setArray(4, connection.createArrayOf("int4", years));
+            ps.setArray(5, connection.createArrayOf("text", statuses));
+            ps.setArray(6, connection.createArrayOf("text", descriptions));
+            ps.setArray(7, connection.createArrayOf("text", contentHashes));
+        }, (rs, rowNum) -> new UpsertedRow(rs.getLong("id"), rs.getString("dex_id"), rs.getBoolean("inserted")));
+    }
+
+    private List<UpsertedRow> upsertRows(List<Manga> rows) {
+        int n = rows.size();
+        String[] dexIds = new String[n];
+        String[] titles = new String[n];
+        String[] authors = new String[n];
+        Integer[] years = new Integer[n];
+        String[] statuses = new String[n];
+        Double[] ratings = new Double[n];
+        String[] descriptions = new String[n];
+        String[] coverUrls = new String[n];
+        String[] contentHashes = new String[n];
+
+        for (int i = 0; i < n; i++) {
+            Manga manga = rows.get(i);
+            dexIds[i] = manga.getDexId();
+            titles[i] = manga.getTitle();
+            authors[i] = manga.getAuthor();
+            years[i] = manga.getYear();
+            statuses[i] = manga.getStatus();
+            ratings[i] = manga.getRating();
+            descriptions[i] = manga.getDescription();
+            coverUrls[i] = manga.getCoverUrl();
+            contentHashes[i] = manga.getContentHash();
+        }
+
+        return jdbcTemplate.query(UPSERT_MANGA_SQL, ps -> {
+            Connection connection = ps.getConnection();
+            ps.setArray(1, connection.createArrayOf("text", dexIds));
+            ps.setArray(2, connection.createArrayOf("text", titles));
+            ps.setArray(3, connection.createArrayOf("text", authors));
+            ps.setArray(4, connection.createArrayOf("int4", years));
+            ps.setArray(5, connection.createArrayOf("text", statuses));
+            ps.setArray(6, connection.createArrayOf("float8", ratings));
+            ps.setArray(7, connection.createArrayOf("text", descriptions));
+            ps.setArray(8, connection.createArrayOf("text", coverUrls));
+            ps.setArray(9, connection.createArrayOf("text", contentHashes));
+        }, (rs, rowNum) -> new UpsertedRow(rs.getLong("id"), rs.getString("dex_id"), rs.getBoolean("inserted")));
+    }
+
+    /**
+     * Write the collection of freshly inserted manga; there's nothing to compare against.
+     */
+    private void insertCollection(List<Manga> rows, Map<String, Long> idsByDexId, CollectionTable table) {
+        if (idsByDexId.isEmpty()) {
+            return;
+        }
+        CollectionArrays contents = collect(rows, idsByDexId, table.values());
+        if (contents.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update(table.insertSql(), ps -> {
+            ps.setArray(1, bigintArray(ps, contents.owners()));
+            ps.setArray(2, ps.getConnection().createArrayOf("text", contents.elements()));
+        });
+    }
+
+    /**
+     * Bring the collection of updated manga in line with the new contents, touching only
+     * the elements that were removed or added. Most updates change a description or status
+     * and leave every alt title and genre row alone.
+     */
+    private void diffCollection(List<Manga> rows, Map<String, Long> idsByDexId, CollectionTable table) {
+        if (idsByDexId.isEmpty()) {
+            return;
+        }
+        Long[] mangaIds = idsByDexId.values().toArray(new Long[0]);
+        CollectionArrays contents = collect(rows, idsByDexId, table.values());
+
+        int removed = jdbcTemplate.update(table.deleteRemovedSql(), ps -> {
+            ps.setArray(1, bigintArray(ps, mangaIds));
+            ps.setArray(2, bigintArray(ps, contents.owners()));
+            ps.setArray(3, ps.getConnection().createArrayOf("text", contents.elements()));
+        });
+        int added = contents.isEmpty() ? 0 : jdbcTemplate.update(table.insertAddedSql(), ps -> {
+            ps.setArray(1, bigintArray(ps, contents.owners()));
+            ps.setArray(2, ps.getConnection().createArrayOf("text", contents.elements()));
+        });
+        log.debug("Collection diff for {} updated manga: {} removed, {} added", mangaIds.length, removed, added);
+    }
+
+    /**
+     * Parallel (owner id, element) arrays for unnest()
+     */
+    private record CollectionArrays(Long[] owners, String[] elements) {
+        boolean isEmpty() { return elements.length == 0; }
+    }
+
+    private static CollectionArrays collect(List<Manga> rows, Map<String, Long> idsByDexId, Function<Manga, List<String>> values) {
+        List<Long> ownerIds = new ArrayList<>();
+        List<String> elements = new ArrayList<>();
+        for (Manga manga : rows) {
+            Long id = idsByDexId.get(manga.getDexId());
+            List<String> collection = values.apply(manga);
+            if (id == null || collection == null) {
+                continue;
+            }
+            // the same alt title often appears under several languages; store it once
+            for (String element : new LinkedHashSet<>(collection)) {
+                if (element != null) {
+                    ownerIds.add(id);
+                    elements.add(element);
+                }
+            }
+        }
+        return new CollectionArrays(ownerIds.toArray(new Long[0]), elements.toArray(new String[0]));
+    }
+
+    private static Array bigintArray(PreparedStatement ps, Long[] values) throws SQLException {
+        return ps.getConnection().createArrayOf("int8", values);
+    }
+}
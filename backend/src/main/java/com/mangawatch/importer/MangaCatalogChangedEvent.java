@@ -0,0 +1,11 @@
+package com.mangawatch.importer;
+
+import java.util.Set;
+
+/**
+ * Published by {@link MangaBulkWriter} for every batch that inserted or updated manga rows.
+ * Listen with a TransactionalEventListener to act only once the batch has committed.
+ *
+ * @param mangaIds ids of the manga rows that were written
+ */
+public record MangaCatalogChangedEvent(Set<Long> mangaIds) {}
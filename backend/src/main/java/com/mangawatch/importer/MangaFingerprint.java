@@ -0,0 +1,63 @@
+package com.mangawatch.importer;
+
+import com.mangawatch.model.Manga;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * SHA-256 fingerprint over the manga fields a re-import can change.
+ *
+ * Only covers what MangaBulkWriter actually updates, so a new fingerprint always
+ * means a write is needed. Collections are sorted first because their order carries
+ * no meaning once stored.
+ */
+final class MangaFingerprint {
+
+    // unit separator, can't appear in normal text so fields can't run into each other
+    private static final char SEPARATOR = '\u001F';
+
+    private MangaFingerprint() {}
+
+    static String of(Manga manga) {
+        StringBuilder sb = new StringBuilder(256);
+        append(sb, manga.getTitle());
+        append(sb, manga.getAuthor());
+        append(sb, manga.getYear() != null ? manga.getYear().toString() : null);
+        append(sb, manga.getStatus());
+        append(sb, manga.getDescription());
+        appendSorted(sb, manga.getAltTitles());
+        appendSorted(sb, manga.getGenres());
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(sb.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // every JVM is required to ship SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void append(StringBuilder sb, String value) {
+        // distinguish null from empty
+        sb.append(value == null ? "\u0000" : value).append(SEPARATOR);
+    }
+
+    private static void appendSorted(StringBuilder sb, List<String> values) {
+        if (values == null) {
+            append(sb, null);
+            return;
+        }
+        List<String> sorted = new ArrayList<>(values);
+        sorted.removeIf(v -> v == null);
+        sorted.sort(null);
+        sb.append(sorted.size()).append(SEPARATOR);
+        for (String value : sorted) {
+            append(sb, value);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.mangawatch.importer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.mangawatch.dto.MangadexResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the MangaDex element each title was last imported from, gzipped in manga_raw, so
+ * {@link MangadexImporter#retransformStored} can rebuild the manga rows locally after the
+ * transformer changes. The element is stored as MangaDex sent it
+ * ({@link MangadexResponse.MangadexManga#getRaw()}), not re-serialized from the DTO, so
+ * attributes the DTOs don't map yet are there when a new field is added.
+ *
+ * Rows are keyed by dex id and only rewritten when the element's updatedAt or its bytes
+ * change, so a re-import of an unchanged catalog writes nothing here, while rows stored as
+ * the re-serialized DTO before the raw element was kept are replaced on the next import.
+ * Gzip output is the same for the same element (no timestamp in the header).
+ */
+@Component
+public class MangaRawStore {
+
+    private static final Logger log = LoggerFactory.getLogger(MangaRawStore.class);
+
+    private static final String UPSERT_SQL =
+        "INSERT INTO manga_raw (dex_id, source_updated_at, payload, stored_at) " +
+        "SELECT r.dex_id, r.source_updated_at, r.payload, now() " +
+        "FROM unnest(?::text[], ?::text[], ?::bytea[]) AS r(dex_id, source_updated_at, payload) " +
+        "ON CONFLICT (dex_id) DO UPDATE SET " +
+        "source_updated_at = EXCLUDED.source_updated_at, " +
+        "payload = EXCLUDED.payload, " +
+        "stored_at = EXCLUDED.stored_at " +
+        "WHERE manga_raw.source_updated_at IS DISTINCT FROM EXCLUDED.source_updated_at " +
+        "OR manga_raw.payload IS DISTINCT FROM EXCLUDED.payload";
+
+    private static final String PAGE_SQL =
+        "SELECT dex_id, payload FROM manga_raw WHERE (?::text IS NULL OR dex_id > ?) ORDER BY dex_id LIMIT ?";
+
+    /**
+     * A stored element as MangaDex sent it. Raw is null if the payload couldn't be read.
+     */
+    public record Stored(String dexId, JsonNode raw) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter writer;
+    private final ObjectReader reader;
+
+    public MangaRawStore(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.writer = objectMapper.writerFor(JsonNode.class).without(SerializationFeature.INDENT_OUTPUT);
+        this.reader = objectMapper.readerFor(JsonNode.class);
+    }
+
+    /**
+     * Store the elements of a page. Never throws: losing a payload only means that title
+     * has to be fetched again before it can be re-transformed.
+     */
+    public void save(List<MangadexResponse.MangadexManga> page) {
+        // a page can't contain the same id twice or the upsert would hit the row twice
+        Map<String, MangadexResponse.MangadexManga> byId = new LinkedHashMap<>();
+        for (MangadexResponse.MangadexManga manga : page) {
+            if (manga != null && manga.getId() != null) {
+                byId.put(manga.getId(), manga);
+            }
+        }
+        if (byId.isEmpty()) {
+            return;
+        }
+
+        int n = byId.size();
+        String[] ids = new String[n];
+        String[] updatedAts = new String[n];
+        byte[][] payloads = new byte[n][];
+        int i = 0;
+        try {
+            for (MangadexResponse.MangadexManga manga : byId.values()) {
+                ids[i] = manga.getId();
+                updatedAts[i] = manga.getAttributes() != null ? manga.getAttributes().getUpdatedAt() : null;
+                // only elements built without their source (none from MangaDex) fall back to the DTO
+                payloads[i] = compress(manga.getRaw() != null ? manga.getRaw() : objectMapper.valueToTree(manga));
+                i++;
+            }
+            jdbcTemplate.update(UPSERT_SQL, ps -> {
+                ps.setArray(1, ps.getConnection().createArrayOf("text", ids));
+                ps.setArray(2, ps.getConnection().createArrayOf("text", updatedAts));
+                ps.setArray(3, ps.getConnection().createArrayOf("bytea", payloads));
+            });
+        } catch (Exception e) {
+            log.warn("Failed to store raw payloads for {} manga", n, e);
+        }
+    }
+
+    /**
+     * Stored elements in dex id order, starting after the given id (null = from the start)
+     */
+    public List<Stored> page(String afterDexId, int limit) {
+        return jdbcTemplate.query(PAGE_SQL, (rs, rowNum) -> {
+            String dexId = rs.getString("dex_id");
+            try {
+                return new Stored(dexId, decompress(rs.getBytes("payload")));
+            } catch (IOException e) {
+                log.error("Couldn't decode stored payload of manga {}", dexId, e);
+                return new Stored(dexId, null);
+            }
+        }, afterDexId, afterDexId, limit);
+    }
+
+    public long count() {
+        Long count = jdbcTemplate.queryForObject("SELECT count(*) FROM manga_raw", Long.class);
+        return count != null ? count : 0;
+    }
+
+    private byte[] compress(JsonNode element) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        // payloads are small and written on the persist path; favour speed over ratio
+        try (OutputStream out = new GZIPOutputStream(bytes) {{ def.setLevel(Deflater.BEST_SPEED); }}) {
+            writer.writeValue(out, element);
+        }
+        return bytes.toByteArray();
+    }
+
+    private JsonNode decompress(byte[] payload) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(payload))) {
+            return reader.readValue(in);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.mangawatch.importer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mangawatch.dto.MangadexResponse;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads a dump written by {@link MangadexDumpWriter}.
+ *
+ * Author names are small enough to load up front; manga are decoded one line at a time.
+ */
+class MangadexDumpReader implements Closeable {
+
+    private final Map<String, String> authors;
+    private final MappingIterator<JsonNode> manga;
+    private final ObjectMapper objectMapper;
+
+    private MangadexDumpReader(Map<String, String> authors, MappingIterator<JsonNode> manga, ObjectMapper objectMapper) {
+        this.authors = authors;
+        this.manga = manga;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @param directory A dump directory containing manga.ndjson.gz (authors.ndjson.gz is optional)
+     */
+    static MangadexDumpReader open(Path directory, ObjectMapper objectMapper) throws IOException {
+        Path mangaFile = directory.resolve(MangadexDumpWriter.MANGA_FILE);
+        if (!Files.isRegularFile(mangaFile)) {
+            throw new IOException("No " + MangadexDumpWriter.MANGA_FILE + " in " + directory);
+        }
+
+        Map<String, String> authors = new HashMap<>();
+        Path authorsFile = directory.resolve(MangadexDumpWriter.AUTHORS_FILE);
+        if (Files.isRegularFile(authorsFile)) {
+            try (MappingIterator<JsonNode> lines = objectMapper.readerFor(JsonNode.class).readValues(gunzip(authorsFile))) {
+                while (lines.hasNextValue()) {
+                    JsonNode line = lines.nextValue();
+                    if (line.hasNonNull("id") && line.hasNonNull("name")) {
+                        authors.put(line.get("id").asText(), line.get("name").asText());
+                    }
+                }
+            }
+        }
+
+        MappingIterator<JsonNode> manga = objectMapper.readerFor(JsonNode.class).readValues(gunzip(mangaFile));
+        return new MangadexDumpReader(authors, manga, objectMapper);
+    }
+
+    private static InputStream gunzip(Path file) throws IOException {
+        return new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16), 1 << 16);
+    }
+
+    /**
+     * authorId -> name for every author recorded in the dump
+     */
+    Map<String, String> authors() {
+        return authors;
+    }
+
+    /**
+     * @return the next recorded manga, or null at the end of the dump
+     */
+    MangadexResponse.MangadexManga nextManga() throws IOException {
+        if (!manga.hasNextValue()) {
+            return null;
+        }
+        // recorded as MangaDex sent it; keep that for manga_raw
+        JsonNode raw = manga.nextValue();
+        MangadexResponse.MangadexManga decoded = objectMapper.treeToValue(raw, MangadexResponse.MangadexManga.class);
+        decoded.setRaw(raw);
+        return decoded;
+    }
+
+    @Override
+    public void close() throws IOException {
+        manga.close();
+    }
+}
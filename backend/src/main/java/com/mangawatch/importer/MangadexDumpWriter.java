@@ -0,0 +1,152 @@
+package com.mangawatch.importer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Records a catalog walk to disk so it can be replayed later without the API.
+ *
+ * A dump is a directory holding two gzipped NDJSON files:
+ * - manga.ndjson.gz: one raw /manga "data" element per line, in fetch order
+ * - authors.ndjson.gz: one {"id": ..., "name": ...} per line for every author the manga reference
+ *
+ * Writing never fails the import; on an I/O error the recording is abandoned and logged.
+ */
+class MangadexDumpWriter implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(MangadexDumpWriter.class);
+
+    static final String MANGA_FILE = "manga.ndjson.gz";
+    static final String AUTHORS_FILE = "authors.ndjson.gz";
+
+    private static final DateTimeFormatter DIR_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final Path directory;
+    private final ObjectMapper objectMapper;
+    private final JsonGenerator manga;
+    private final JsonGenerator authors;
+    // authors are resolved per page, so the same id comes up again and again
+    private final Set<String> recordedAuthors = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean failed;
+    private int mangaCount;
+
+    private MangadexDumpWriter(Path directory, ObjectMapper objectMapper) throws IOException {
+        this.directory = directory;
+        this.objectMapper = objectMapper;
+        this.manga = open(directory.resolve(MANGA_FILE));
+        try {
+            this.authors = open(directory.resolve(AUTHORS_FILE));
+        } catch (IOException e) {
+            manga.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Start a new dump in a timestamped sub-directory of the given root.
+     *
+     * @param root Directory dumps are collected under (created if needed)
+     * @param label Prefix for the dump directory, e.g. the job type
+     */
+    static MangadexDumpWriter create(Path root, String label, ObjectMapper objectMapper) throws IOException {
+        Path directory = root.resolve(label + "-" + LocalDateTime.now().format(DIR_TIMESTAMP));
+        Files.createDirectories(directory);
+        log.info("Recording MangaDex pages to {}", directory);
+        return new MangadexDumpWriter(directory, objectMapper);
+    }
+
+    private JsonGenerator open(Path file) throws IOException {
+        OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        // NDJSON: one compact value per line, no pretty printing inherited from the mapper
+        generator.setPrettyPrinter(null);
+        generator.setRootValueSeparator(null);
+        return generator;
+    }
+
+    Path getDirectory() { return directory; }
+
+    /**
+     * Append one raw manga element. Called from the fetching (shard) threads.
+     */
+    void recordManga(JsonNode raw) {
+        if (failed) {
+            return;
+        }
+        try {
+            synchronized (manga) {
+                manga.writeTree(raw);
+                manga.writeRaw('\n');
+                mangaCount++;
+            }
+        } catch (IOException e) {
+            abandon(e);
+        }
+    }
+
+    /**
+     * Append any author names not already in the dump. Called from transform workers.
+     */
+    void recordAuthors(Map<String, String> names) {
+        if (failed) {
+            return;
+        }
+        try {
+            synchronized (authors) {
+                for (Map.Entry<String, String> entry : names.entrySet()) {
+                    if (entry.getValue() == null || !recordedAuthors.add(entry.getKey())) {
+                        continue;
+                    }
+                    authors.writeStartObject();
+                    authors.writeStringField("id", entry.getKey());
+                    authors.writeStringField("name", entry.getValue());
+                    authors.writeEndObject();
+                    authors.writeRaw('\n');
+                }
+            }
+        } catch (IOException e) {
+            abandon(e);
+        }
+    }
+
+    private void abandon(IOException e) {
+        if (!failed) {
+            failed = true;
+            log.error("Failed to write MangaDex dump {}, recording stopped", directory, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            synchronized (manga) {
+                manga.close();
+            }
+            synchronized (authors) {
+                authors.close();
+            }
+            log.info("Recorded {} manga and {} authors to {}{}", mangaCount, recordedAuthors.size(), directory,
+                failed ? " (incomplete)" : "");
+        } catch (IOException e) {
+            log.error("Failed to close MangaDex dump {}", directory, e);
+        }
+    }
+}
@@ -3,252 +3,1405 @@ package com.mangawatch.importer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriBuilder;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mangawatch.dto.AuthorResponse;
 import com.mangawatch.dto.MangadexResponse;
+import com.mangawatch.media.CoverPrefetcher;
+import com.mangawatch.model.ImportSyncState;
 import com.mangawatch.model.Manga;
-import com.mangawatch.repository.MangaRepository;
+import com.mangawatch.repository.ImportSyncStateRepository;
 import com.mangawatch.service.MangadexTransformer;
 
-import java.time.Duration;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Service to import manga data from MangaDex API into our database.
  * Uses cursor-based pagination with createdAt timestamps to bypass 10k offset limit.
+ * Incremental syncs page the same way over updatedAt, starting from a persisted high-water mark.
  */
 @Service
 public class MangadexImporter {
     
     private static final Logger log = LoggerFactory.getLogger(MangadexImporter.class);
     
+    /** Name of the import_sync_state row used by the updatedAt delta sync */
+    public static final String DELTA_SYNC = "delta";
+    
+    // import_run.type of each kind of catalog walk
+    private static final String RUN_FULL = "full";
+    private static final String RUN_CURSOR = "cursor";
+    private static final String RUN_SYNC = "sync";
+    
+    // MangaDex only accepts *Since parameters in this exact shape (UTC, no offset)
+    private static final DateTimeFormatter API_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+    
+    // MangaDex rejects offset + limit beyond this
+    private static final int OFFSET_WINDOW = 10_000;
+    
+    // time slices per shard worker, so a dense part of the timeline gets shared out
+    private static final int SEGMENTS_PER_SHARD = 4;
+    
+    private static final AtomicInteger SHARD_THREADS = new AtomicInteger();
+    
     private final WebClient apiClient;
-    private final MangaRepository mangaRepository;
+    private final MangaBulkWriter bulkWriter;
     private final MangadexTransformer transformer;
+    private final ImportSyncStateRepository syncStateRepository;
+    private final AuthorNameCache authorCache;
+    private final ImportCheckpointStore checkpointStore;
+    private final ImportDeadLetterStore deadLetters;
+    private final MangaRawStore rawStore;
+    private final CoverPrefetcher coverPrefetcher;
+    private final MangadexPageDecoder pageDecoder;
+    private final ObjectMapper objectMapper;
     
     @Value("${mangadex.import.batch-size:100}")
     private int batchSize;
     
-    @Value("${mangadex.import.rate-limit-ms:250}")
-    private int rateLimitMs;
+    @Value("${mangadex.import.transform-workers:2}")
+    private int transformWorkers;
+    
+    @Value("${mangadex.import.persist-workers:2}")
+    private int persistWorkers;
     
-    @Value("${mangadex.import.max-retries:3}")
-    private int maxRetries;
+    @Value("${mangadex.import.queue-capacity:4}")
+    private int queueCapacity;
+    
+    @Value("${mangadex.import.streaming-decode:true}")
+    private boolean streamingDecode;
+    
+    @Value("${mangadex.import.stream-chunk-size:50}")
+    private int streamChunkSize;
+    
+    @Value("${mangadex.import.shards:4}")
+    private int shardCount;
+    
+    // Keep each title's MangaDex element in manga_raw so it can be re-transformed offline
+    @Value("${mangadex.import.keep-raw:true}")
+    private boolean keepRaw;
+    
+    // When set, every catalog walk is also recorded here for offline replay
+    @Value("${mangadex.import.record-dir:}")
+    private String recordDir;
     
     public MangadexImporter(
             WebClient mangadexWebClient,
-            MangaRepository mangaRepository,
-            MangadexTransformer transformer) {
+            MangaBulkWriter bulkWriter,
+            MangadexTransformer transformer,
+            ImportSyncStateRepository syncStateRepository,
+            AuthorNameCache authorCache,
+            ImportCheckpointStore checkpointStore,
+            ImportDeadLetterStore deadLetters,
+            MangaRawStore rawStore,
+            CoverPrefetcher coverPrefetcher,
+            ObjectMapper objectMapper) {
         this.apiClient = mangadexWebClient;
-        this.mangaRepository = mangaRepository;
+        this.bulkWriter = bulkWriter;
         this.transformer = transformer;
+        this.syncStateRepository = syncStateRepository;
+        this.authorCache = authorCache;
+        this.checkpointStore = checkpointStore;
+        this.deadLetters = deadLetters;
+        this.rawStore = rawStore;
+        this.coverPrefetcher = coverPrefetcher;
+        this.pageDecoder = new MangadexPageDecoder(objectMapper);
+        this.objectMapper = objectMapper;
+    }
+    
+    /**
+     * The MangaDex timestamp attribute a catalog walk is ordered and paged by
+     */
+    enum CursorField {
+        CREATED_AT("createdAt"),
+        UPDATED_AT("updatedAt");
+        
+        private final String param;
+        
+        CursorField(String param) { this.param = param; }
+        
+        String valueOf(MangadexResponse.MangadexManga manga) {
+            if (manga.getAttributes() == null) {
+                return null;
+            }
+            return this == CREATED_AT ? manga.getAttributes().getCreatedAt() : manga.getAttributes().getUpdatedAt();
+        }
     }
     
     /**
-     * Import result statistics
+     * Import result statistics.
+     * Counters are updated concurrently by the transform and persist stages.
      */
     public static class ImportResult {
-        private int totalFetched;
-        private int newInserted;
-        private int updated;
-        private int skipped;
-        private int errors;
-        private List<String> errorDetails = new ArrayList<>();
-        private String lastCreatedAt;
+        private final AtomicInteger totalFetched = new AtomicInteger();
+        private final AtomicInteger newInserted = new AtomicInteger();
+        private final AtomicInteger updated = new AtomicInteger();
+        private final AtomicInteger skipped = new AtomicInteger();
+        private final AtomicInteger errors = new AtomicInteger();
+        private final List<String> errorDetails = Collections.synchronizedList(new ArrayList<>());
+        private volatile String lastCreatedAt;
+        private volatile String lastUpdatedAt;
+        private volatile boolean reachedEnd;
+        private volatile boolean budgetSpent;
         
         public ImportResult() {}
         
-        public void incrementFetched() { totalFetched++; }
-        public void incrementInserted() { newInserted++; }
-        public void incrementUpdated() { updated++; }
-        public void incrementSkipped() { skipped++; }
-        public void incrementErrors() { errors++; }
+        public void incrementFetched() { totalFetched.incrementAndGet(); }
+        public void incrementInserted() { newInserted.incrementAndGet(); }
+        public void incrementUpdated() { updated.incrementAndGet(); }
+        public void incrementSkipped() { skipped.incrementAndGet(); }
+        public void incrementErrors() { errors.incrementAndGet(); }
+        public void addInserted(int count) { newInserted.addAndGet(count); }
+        public void addUpdated(int count) { updated.addAndGet(count); }
+        public void addSkipped(int count) { skipped.addAndGet(count); }
         
         public void addError(String mangaId, String error) {
-            errors++;
-            if (errorDetails.size() < 100) {
-                errorDetails.add(String.format("Manga %s: %s", mangaId, error));
+            errors.incrementAndGet();
+            synchronized (errorDetails) {
+                if (errorDetails.size() < 100) {
+                    errorDetails.add(String.format("Manga %s: %s", mangaId, error));
+                }
             }
         }
         
-        public int getTotalFetched() { return totalFetched; }
-        public int getNewInserted() { return newInserted; }
-        public int getUpdated() { return updated; }
-        public int getSkipped() { return skipped; }
-        public int getErrors() { return errors; }
-        public List<String> getErrorDetails() { return errorDetails; }
+        public int getTotalFetched() { return totalFetched.get(); }
+        public int getNewInserted() { return newInserted.get(); }
+        public int getUpdated() { return updated.get(); }
+        public int getSkipped() { return skipped.get(); }
+        public int getErrors() { return errors.get(); }
+        public List<String> getErrorDetails() {
+            synchronized (errorDetails) {
+                return new ArrayList<>(errorDetails);
+            }
+        }
         public String getLastCreatedAt() { return lastCreatedAt; }
         public void setLastCreatedAt(String lastCreatedAt) { this.lastCreatedAt = lastCreatedAt; }
+        public String getLastUpdatedAt() { return lastUpdatedAt; }
+        public void setLastUpdatedAt(String lastUpdatedAt) { this.lastUpdatedAt = lastUpdatedAt; }
+        public boolean isReachedEnd() { return reachedEnd; }
+        public void setReachedEnd(boolean reachedEnd) { this.reachedEnd = reachedEnd; }
+        public boolean isBudgetSpent() { return budgetSpent; }
+        public void setBudgetSpent(boolean budgetSpent) { this.budgetSpent = budgetSpent; }
         
         @Override
         public String toString() {
             return String.format(
                 "Import Complete - Fetched: %d, Inserted: %d, Updated: %d, Skipped: %d, Errors: %d (Last cursor: %s)",
-                totalFetched, newInserted, updated, skipped, errors, lastCreatedAt
+                getTotalFetched(), getNewInserted(), getUpdated(), getSkipped(), getErrors(), lastCreatedAt
             );
         }
     }
     
     /**
      * Main import method - fetches ALL manga using cursor-based pagination.
-     * This bypasses the 10k offset limit by using createdAtSince parameter.
+     * The createdAt timeline is split into segments that are walked concurrently by
+     * mangadex.import.shards workers, all sharing the same rate budget and pipeline.
      * 
+     * @param job Job to report progress to and check for cancellation
      * @return ImportResult with statistics
      */
-    public ImportResult importAllManga() {
-        return importMangaWithCursor(null, Integer.MAX_VALUE);
+    public ImportResult importAllManga(ImportJob job) {
+        String startedAt = LocalDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.SECONDS).format(API_TIMESTAMP);
+        ImportResult result = walkSharded(startedAt, job);
+        
+        // Anything updated after the full walk started is picked up by the next delta sync
+        if (result.isReachedEnd()) {
+            saveHighWaterMark(startedAt);
+        }
+        return result;
+    }
+    
+    /**
+     * Incremental sync - only fetches manga whose updatedAt is at or after the persisted
+     * high-water mark, then advances the mark to the newest updatedAt seen.
+     * 
+     * The mark only moves once the walk reaches the end of the feed, so an interrupted
+     * sync simply repeats on the next run.
+     * 
+     * @param job Job to report progress to and check for cancellation
+     * @return ImportResult with statistics; lastUpdatedAt holds the new high-water mark
+     * @throws IllegalStateException if no full import has ever recorded a high-water mark
+     */
+    public ImportResult syncUpdatedSince(ImportJob job) {
+        String since = getHighWaterMark()
+            .orElseThrow(() -> new IllegalStateException(
+                "No sync high-water mark recorded yet. Run a full import first."));
+        
+        ImportResult result = walkCatalog(RUN_SYNC, CursorField.UPDATED_AT, since, Integer.MAX_VALUE, null, job);
+        
+        if (result.isReachedEnd()) {
+            saveHighWaterMark(result.getLastUpdatedAt() != null ? result.getLastUpdatedAt() : since);
+        }
+        return result;
+    }
+    
+    /**
+     * Current delta sync high-water mark, if a full import or sync has completed before
+     */
+    public Optional<String> getHighWaterMark() {
+        return syncStateRepository.findById(DELTA_SYNC)
+            .map(ImportSyncState::getHighWaterMark);
+    }
+    
+    private void saveHighWaterMark(String mark) {
+        ImportSyncState state = syncStateRepository.findById(DELTA_SYNC)
+            .orElseGet(() -> new ImportSyncState(DELTA_SYNC));
+        state.setHighWaterMark(mark);
+        state.setLastRunAt(LocalDateTime.now());
+        syncStateRepository.save(state);
+        log.info("Delta sync high-water mark is now {}", mark);
     }
     
     /**
      * Import manga starting from a specific createdAt cursor.
      * Use this to resume an interrupted import or to manually paginate.
      * 
+     * Pages are fetched on a single cursor and handed to an {@link ImportPipeline},
+     * so the next page is already downloading while earlier ones are transformed and saved.
+     * 
      * @param startCursor createdAt timestamp to start from (null = from beginning)
      * @param maxManga Maximum number of manga to import
+     * @param job Job to report progress to and check for cancellation
      * @return ImportResult with statistics including last cursor position
      */
-    public ImportResult importMangaWithCursor(String startCursor, int maxManga) {
-        log.info("Starting MangaDex import - cursor: {}, max: {}, batch size: {}", 
-            startCursor != null ? startCursor : "START", maxManga, batchSize);
+    public ImportResult importMangaWithCursor(String startCursor, int maxManga, ImportJob job) {
+        return walkCatalog(RUN_CURSOR, CursorField.CREATED_AT, startCursor, maxManga, null, job);
+    }
+    
+    /**
+     * Most recent catalog walk that didn't finish (crashed, cancelled or gave up on a page),
+     * if it was the last one started
+     */
+    public Optional<ImportCheckpointStore.Run> findResumableRun() {
+        return checkpointStore.latestRun()
+            .filter(run -> run.state() != ImportCheckpointStore.RunState.COMPLETED);
+    }
+    
+    /**
+     * Continue the most recent unfinished run from its committed checkpoints, with the same
+     * cursor field, segments and remaining manga budget. Each segment restarts right after
+     * the last page that was fully persisted, so at most the pages that were in flight when
+     * the run stopped are fetched again.
+     * 
+     * Completing a resumed full import or sync advances the delta sync high-water mark the
+     * same way the original run would have.
+     * 
+     * @param job Job to report progress to and check for cancellation
+     * @return ImportResult with statistics for this leg of the run only
+     * @throws IllegalStateException if there is no unfinished run
+     */
+    public ImportResult resumeLastRun(ImportJob job) {
+        ImportCheckpointStore.Run run = findResumableRun()
+            .orElseThrow(() -> new IllegalStateException("No unfinished import run to resume"));
+        
+        CursorField field = CursorField.valueOf(run.cursorField());
+        List<Segment> segments = run.segments().stream().map(Segment::new).toList();
+        int maxManga = run.maxManga() == Integer.MAX_VALUE
+            ? Integer.MAX_VALUE
+            : Math.max(0, run.maxManga() - run.counters().fetched());
+        int parallelism = RUN_FULL.equals(run.type()) ? Math.max(1, shardCount) : 1;
+        log.info("Resuming {} import run {} ({} state, {} of {} segments done, {} manga fetched so far)",
+            run.type(), run.id(), run.state(), segments.stream().filter(segment -> segment.done).count(),
+            segments.size(), run.counters().fetched());
+        
+        checkpointStore.markRunning(run.id());
+        ImportResult result = walkRun(field, segments, parallelism, maxManga, job,
+            new CheckpointedRun(run.id(), run.counters()));
+        
+        if (result.isReachedEnd()) {
+            if (RUN_FULL.equals(run.type()) && run.highWaterMark() != null) {
+                saveHighWaterMark(run.highWaterMark());
+            } else if (RUN_SYNC.equals(run.type())) {
+                String since = segments.get(0).from;
+                String mark = result.getLastUpdatedAt() != null ? result.getLastUpdatedAt() : since;
+                if (mark != null) {
+                    saveHighWaterMark(mark);
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * A slice of the timeline: manga with from <= timestamp < until (null = unbounded).
+     * Cursor is how far the walk got, so an unfinished segment can be resumed from it.
+     * A segment loaded from a checkpoint starts at the committed cursor, skipping the ids
+     * already taken at exactly that timestamp.
+     */
+    static final class Segment {
+        final int index;
+        final String from;
+        final String until;
+        final Set<String> seenAtStart;
+        volatile String cursor;
+        volatile boolean done;
+        CommitTracker tracker;
+        
+        Segment(int index, String from, String until) {
+            this.index = index;
+            this.from = from;
+            this.until = until;
+            this.seenAtStart = Set.of();
+            this.cursor = from;
+        }
+        
+        Segment(ImportCheckpointStore.SegmentState checkpoint) {
+            this.index = checkpoint.segment();
+            this.from = checkpoint.from();
+            this.until = checkpoint.until();
+            this.seenAtStart = checkpoint.seenAtCursor();
+            this.cursor = checkpoint.cursor();
+            this.done = checkpoint.done();
+        }
+        
+        ImportCheckpointStore.SegmentState at(String cursor, Set<String> seenAtCursor, boolean done) {
+            return new ImportCheckpointStore.SegmentState(index, from, until, cursor, seenAtCursor, done);
+        }
+    }
+    
+    /**
+     * The import_run a walk checkpoints to, and the counts carried over from earlier legs of it
+     */
+    private record CheckpointedRun(long id, ImportCheckpointStore.Counters base) {}
+    
+    /**
+     * Walk the whole catalog on one cursor, from startCursor to the end
+     */
+    private ImportResult walkCatalog(String kind, CursorField field, String startCursor, int maxManga,
+            String highWaterMark, ImportJob job) {
+        String from = startCursor != null ? toApiTimestamp(startCursor) : null;
+        List<Segment> segments = List.of(new Segment(0, from, null));
+        return walkRun(field, segments, 1, maxManga, job, startRun(kind, field, maxManga, highWaterMark, segments));
+    }
+    
+    /**
+     * Record a new run, or return null to carry on without checkpoints if that fails
+     */
+    private CheckpointedRun startRun(String kind, CursorField field, int maxManga, String highWaterMark, List<Segment> segments) {
+        try {
+            List<ImportCheckpointStore.SegmentState> states = segments.stream()
+                .map(segment -> segment.at(segment.cursor, Set.of(), false))
+                .toList();
+            long runId = checkpointStore.startRun(kind, field.name(), maxManga, highWaterMark, states);
+            log.info("Recording checkpoints for {} import as run {}", kind, runId);
+            return new CheckpointedRun(runId, ImportCheckpointStore.Counters.NONE);
+        } catch (Exception e) {
+            log.error("Could not record import run, continuing without checkpoints", e);
+            return null;
+        }
+    }
+    
+    /**
+     * Split the createdAt timeline into shards x SEGMENTS_PER_SHARD equal time slices and walk them
+     * with one worker per shard. Slices are handed out as workers free up, so a dense stretch of the
+     * catalog doesn't leave the other workers idle.
+     */
+    private ImportResult walkSharded(String startedAt, ImportJob job) {
+        if (shardCount <= 1) {
+            return walkCatalog(RUN_FULL, CursorField.CREATED_AT, null, Integer.MAX_VALUE, startedAt, job);
+        }
+        
+        Boundary first = fetchBoundary(CursorField.CREATED_AT, "asc");
+        Boundary last = fetchBoundary(CursorField.CREATED_AT, "desc");
+        if (first == null || last == null) {
+            log.warn("Couldn't determine the createdAt range, falling back to a single cursor");
+            return walkCatalog(RUN_FULL, CursorField.CREATED_AT, null, Integer.MAX_VALUE, startedAt, job);
+        }
+        job.setExpectedTotal(first.total());
+        
+        List<Segment> segments = splitTimeline(first.timestamp(), last.timestamp(), shardCount * SEGMENTS_PER_SHARD);
+        log.info("Importing {} manga created {} .. {} in {} segments over {} shards",
+            first.total(), first.timestamp(), last.timestamp(), segments.size(), shardCount);
+        return walkRun(CursorField.CREATED_AT, segments, shardCount, Integer.MAX_VALUE, job,
+            startRun(RUN_FULL, CursorField.CREATED_AT, Integer.MAX_VALUE, startedAt, segments));
+    }
+    
+    /**
+     * Segments covering the whole timeline: the first has no lower bound and the last no upper bound,
+     * so nothing outside the sampled range is missed.
+     */
+    static List<Segment> splitTimeline(String first, String last, int count) {
+        LocalDateTime start = LocalDateTime.parse(first, API_TIMESTAMP);
+        LocalDateTime end = LocalDateTime.parse(last, API_TIMESTAMP);
+        long span = Math.max(0, ChronoUnit.SECONDS.between(start, end));
+        int slices = (int) Math.max(1, Math.min(count, span));
+        
+        List<Segment> segments = new ArrayList<>(slices);
+        String from = null;
+        for (int i = 0; i < slices; i++) {
+            String until = i == slices - 1 ? null : start.plusSeconds(span * (i + 1) / slices).format(API_TIMESTAMP);
+            segments.add(new Segment(i, from, until));
+            from = until;
+        }
+        return segments;
+    }
+    
+    /**
+     * Walk the segments, checkpointing each committed page to the run (if there is one) and
+     * recording how the run ended
+     */
+    private ImportResult walkRun(CursorField field, List<Segment> segments, int parallelism, int maxManga,
+            ImportJob job, CheckpointedRun run) {
+        try {
+            ImportResult result = walkSegments(field, segments, parallelism, maxManga, job, run != null
+                ? segment -> checkpointStore.checkpoint(run.id(), segment, run.base().plus(job.getResult()))
+                : null);
+            if (run != null) {
+                ImportCheckpointStore.RunState state = result.isReachedEnd() || result.isBudgetSpent()
+                    ? ImportCheckpointStore.RunState.COMPLETED
+                    : job.isCancelRequested() ? ImportCheckpointStore.RunState.CANCELLED : ImportCheckpointStore.RunState.INCOMPLETE;
+                checkpointStore.finishRun(run.id(), state, run.base().plus(result));
+            }
+            return result;
+        } catch (RuntimeException e) {
+            if (run != null) {
+                checkpointStore.finishRun(run.id(), ImportCheckpointStore.RunState.INCOMPLETE, run.base().plus(job.getResult()));
+            }
+            throw e;
+        }
+    }
+    
+    private ImportResult walkSegments(CursorField field, List<Segment> segments, int parallelism, int maxManga,
+            ImportJob job, Consumer<ImportCheckpointStore.SegmentState> onCommitted) {
+        log.info("Starting MangaDex import - order: {}, cursor: {}, max: {}, batch size: {}, shards: {}", 
+            field.param, segments.get(0).from != null ? segments.get(0).from : "START", maxManga, batchSize, parallelism);
         
-        ImportResult result = new ImportResult();
-        result.setLastCreatedAt(startCursor);
+        ImportResult result = job.getResult();
+        MangadexDumpWriter recorder = openRecorder(job);
+        Function<Set<String>, Map<String, String>> authorFetcher = this::fetchAuthorsBatch;
+        int workers = Math.min(parallelism, segments.size());
         
-        int fetchedCount = 0;
-        String currentCursor = startCursor;
-        int offsetWithinBatch = 0; // Track offset within current 10k window
+        // lets the writer send titles it already has straight to an update
+        bulkWriter.loadIndex();
+        job.setWorkerCounts(workers, transformWorkers, persistWorkers);
+        ImportPipeline pipeline = new ImportPipeline(
+            transformWorkers, persistWorkers, queueCapacity,
+            page -> timed(job.transformStage(), () -> transformBatch(page, result, authorFetcher, recorder)),
+            (batch, source) -> timed(job.persistStage(), () -> persistBatch(batch, source, result, keepRaw)),
+            (page, stage, error) -> deadLetterPage(page, stage, error, result));
         
-        while (fetchedCount < maxManga) {
+        // tracked even without checkpoints, to find out whether a page was lost
+        for (Segment segment : segments) {
+            segment.tracker = new CommitTracker(onCommitted != null ? onCommitted : state -> {});
+        }
+        
+        AtomicInteger budget = new AtomicInteger(maxManga);
+        ExecutorService shards = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "import-shard-" + SHARD_THREADS.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        boolean drain = true;
+        try {
+            List<Future<?>> walks = new ArrayList<>();
+            for (Segment segment : segments) {
+                walks.add(shards.submit(() -> {
+                    walkSegment(field, segment, budget, pipeline, recorder, job);
+                    return null;
+                }));
+            }
+            for (Future<?> walk : walks) {
+                try {
+                    walk.get();
+                } catch (ExecutionException e) {
+                    log.error("Import shard failed", e.getCause());
+                    result.addError("shard", String.valueOf(e.getCause().getMessage()));
+                }
+            }
+        } catch (InterruptedException e) {
+            log.error("Import interrupted", e);
+            Thread.currentThread().interrupt();
+            drain = false;
+        } finally {
+            shards.shutdownNow();
+        }
+        
+        if (drain) {
             try {
-                int limit = Math.min(batchSize, maxManga - fetchedCount);
-                
-                log.info("Fetching page - cursor: {}, offset: {}, limit: {}", 
-                    currentCursor != null ? currentCursor : "START", offsetWithinBatch, limit);
-                
-                // Fetch page using cursor + offset
-                MangadexResponse response = fetchPageWithCursor(currentCursor, offsetWithinBatch, limit);
-                
-                if (response == null || response.getData() == null || response.getData().isEmpty()) {
-                    log.info("No more data available. Import complete.");
-                    break;
+                pipeline.finish();
+            } catch (InterruptedException e) {
+                log.error("Interrupted while waiting for import pipeline to drain", e);
+                Thread.currentThread().interrupt();
+                pipeline.abort();
+            }
+        } else {
+            pipeline.abort();
+        }
+        if (recorder != null) {
+            recorder.close();
+        }
+        
+        // A lost page holds its segment's checkpoint back; the segment isn't done until a resume re-fetches it
+        for (Segment segment : segments) {
+            if (segment.done && segment.tracker.hasLostPages()) {
+                log.error("Segment {} lost a page that was neither saved nor dead-lettered; resume to fetch it again", segment.index);
+                result.addError("segment-" + segment.index, "A page was neither saved nor dead-lettered");
+                segment.done = false;
+            }
+        }
+        
+        // Everything before the first unfinished segment is in; later segments may be partly done,
+        // which a resume simply walks again
+        Segment resumeFrom = segments.stream().filter(segment -> !segment.done).findFirst().orElse(null);
+        result.setReachedEnd(resumeFrom == null);
+        result.setBudgetSpent(budget.get() <= 0);
+        Segment progress = resumeFrom != null ? resumeFrom : segments.get(segments.size() - 1);
+        if (field == CursorField.CREATED_AT) {
+            result.setLastCreatedAt(progress.cursor);
+        } else if (progress.cursor != null) {
+            result.setLastUpdatedAt(progress.cursor);
+        }
+        
+        log.info(result.toString());
+        return result;
+    }
+    
+    /**
+     * Walk one segment by keyset: each request asks for everything at or after the newest
+     * timestamp seen so far (the *Since filters are second-granular and inclusive) from offset 0,
+     * and drops ids already taken at exactly that second. MangaDex can't order by id and its order
+     * among manga sharing a second isn't stable, so an offset past "the ties seen so far" could
+     * skip one that hasn't come back yet. Instead:
+     * - a page that reaches a later second holds every manga of the cursor's second, whatever their order
+     * - a second with a page or more of manga is scanned page by page, in repeated passes, until
+     *   every one of them has been taken: how many there are is the *Since total at that second
+     *   less the one at the next. Only then is it skipped by offset (its exact size).
+     * A failed page is retried from the same cursor instead of being skipped.
+     */
+    private void walkSegment(CursorField field, Segment segment, AtomicInteger budget, ImportPipeline pipeline,
+            MangadexDumpWriter recorder, ImportJob job) throws InterruptedException {
+        ImportResult result = job.getResult();
+        if (segment.done) {
+            return;
+        }
+        KeysetCursor cursor = new KeysetCursor(field, segment.cursor, segment.seenAtStart, segment.until);
+        
+        // Items are handed to the pipeline in chunks as they're decoded; blocks only if
+        // the later stages are backed up
+        List<MangadexResponse.MangadexManga> chunk = new ArrayList<>();
+        
+        while (true) {
+            String since = cursor.since;
+            if (job.isCancelRequested()) {
+                log.info("Import cancelled in segment {} at cursor {}", segment.index, since);
+                return;
+            }
+            
+            int limit = Math.min(batchSize, budget.get());
+            if (limit <= 0) {
+                return;
+            }
+            int offset = cursor.offset();
+            if (offset + limit > OFFSET_WINDOW) {
+                log.error("More than {} manga share {} {}, can't page past them", OFFSET_WINDOW, field.param, since);
+                result.addError("segment-" + segment.index + "-cursor-" + since, "Too many manga with the same " + field.param);
+                return;
+            }
+            int chunkSize = streamingDecode ? Math.max(1, streamChunkSize) : limit;
+            
+            log.info("Fetching page - segment: {}, cursor: {}, offset: {}, limit: {}{}", 
+                segment.index, since != null ? since : "START", offset, limit, cursor.scanningTies ? " (ties only)" : "");
+            
+            KeysetPage keyset = cursor.page();
+            CommitTracker.Mark mark = segment.tracker != null ? segment.tracker.open() : null;
+            // Time spent blocked on a full pipeline is the database's fault, not the network's
+            long[] blockedNanos = {0};
+            MangadexPageDecoder.MangaSink sink = manga -> {
+                if (!keyset.accept(manga)) {
+                    return;
                 }
+                chunk.add(manga);
+                if (chunk.size() >= chunkSize) {
+                    blockedNanos[0] += submitTimed(pipeline, chunk, job, mark);
+                }
+            };
+            
+            long fetchStart = System.nanoTime();
+            MangadexPageDecoder.PageSummary page = fetchPageWithCursor(field, since, offset, limit, sink, recorder);
+            job.fetchStage().record(System.nanoTime() - fetchStart - blockedNanos[0]);
+            
+            // whatever was decoded before a failure still gets processed
+            submitTimed(pipeline, chunk, job, mark);
+            budget.addAndGet(-keyset.accepted);
+            
+            if (page == null) {
+                // retries already happened in the client filter; stop here rather than skip rows
+                log.error("Giving up on segment {} at cursor {}", segment.index, since);
+                result.addError("segment-" + segment.index + "-cursor-" + since, "Failed to fetch page");
+                if (mark != null) {
+                    mark.seal(null);
+                }
+                return;
+            }
+            
+            boolean finished = cursor.advance(keyset, page.count() >= limit, page.total());
+            if (cursor.needsLaterTotal()) {
+                cursor.laterTotal(fetchTotalSince(field, cursor.nextSecond()));
+            }
+            since = cursor.since;
+            if (mark != null) {
+                mark.seal(segment.at(since, cursor.seenAtSince, finished));
+            }
+            segment.cursor = since;
+            job.recordPage(since, offset, segment.until == null ? page.total() : null);
+            if (field == CursorField.UPDATED_AT && segment.until == null && since != null) {
+                result.setLastUpdatedAt(since);
+            }
+            
+            log.info("Progress: segment {} at cursor {} ({} manga fetched overall)", 
+                segment.index, since != null ? since : "START", result.getTotalFetched());
+            
+            if (cursor.stuck) {
+                // stop rather than skip the ones never served; a resumed run scans the second again
+                log.error("Segment {} saw {} of the manga at {} {} in {} passes, giving up on it",
+                    segment.index, cursor.seenAtSince.size(), field.param, since, KeysetCursor.MAX_TIE_PASSES);
+                result.addError("segment-" + segment.index + "-cursor-" + since,
+                    "Couldn't page through every manga with the same " + field.param);
+                return;
+            }
+            if (finished) {
+                segment.done = true;
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Where a segment's keyset walk stands between pages (see {@link #walkSegment}): the newest
+     * second reached, the ids already taken at it, and whether that second is being scanned
+     * page by page. No I/O, so the walk through crowded seconds can be tested without a server.
+     */
+    static final class KeysetCursor {
+        // passes over one crowded second before giving up on it
+        static final int MAX_TIE_PASSES = 50;
+        
+        private final CursorField field;
+        private final String until;
+        String since;
+        Set<String> seenAtSince;
+        // every manga at since is in seenAtSince, so the next request can skip exactly that many
+        private boolean tiesComplete;
+        // paging through a second with too many manga for one page, and where the current pass is
+        boolean scanningTies;
+        private int scanOffset;
+        private int passes;
+        private boolean passFoundNew;
+        // the *Since total at the next second while scanning; null until asked for, or if unavailable
+        private boolean laterTotalAsked;
+        private Integer laterTotal;
+        // the scan ran out of passes without seeing every manga at since
+        boolean stuck;
+        
+        KeysetCursor(CursorField field, String since, Set<String> seenAtSince, String until) {
+            this.field = field;
+            this.since = since;
+            this.seenAtSince = new HashSet<>(seenAtSince);
+            this.until = until;
+        }
+        
+        /**
+         * Offset of the next request (filtered by since)
+         */
+        int offset() {
+            return tiesComplete ? seenAtSince.size() : scanOffset;
+        }
+        
+        /**
+         * Bookkeeping for the next page, to feed its items through
+         */
+        KeysetPage page() {
+            return new KeysetPage(field, since, seenAtSince, until, scanningTies);
+        }
+        
+        /**
+         * Whether a scan of since just started and needs {@link #laterTotal} before its next page
+         */
+        boolean needsLaterTotal() {
+            return scanningTies && !laterTotalAsked;
+        }
+        
+        /**
+         * The second after since, whose *Since total {@link #laterTotal} takes
+         */
+        String nextSecond() {
+            return LocalDateTime.parse(since, API_TIMESTAMP).plusSeconds(1).format(API_TIMESTAMP);
+        }
+        
+        /**
+         * How many manga are at or after {@link #nextSecond}, or null if that couldn't be fetched;
+         * the scan then ends after a pass that turns up no new id, which can miss one
+         */
+        void laterTotal(Integer total) {
+            laterTotalAsked = true;
+            laterTotal = total;
+        }
+        
+        /**
+         * Move past a page whose items all went through {@link KeysetPage#accept}
+         * 
+         * @param fullPage whether the page came back with as many items as asked for
+         * @param total    the page's total (manga at or after since), if it had one
+         * @return whether the segment is done
+         */
+        boolean advance(KeysetPage keyset, boolean fullPage, Integer total) {
+            boolean finished = false;
+            if (scanningTies) {
+                // still on since; later manga are left for after the scan
+                seenAtSince = keyset.nextSeen();
+                passFoundNew |= keyset.acceptedAtSince > 0;
+                Integer ties = total != null && laterTotal != null ? total - laterTotal : null;
+                boolean passOver = !fullPage || keyset.sawLater;
+                if (ties != null ? seenAtSince.size() >= ties : passOver && !passFoundNew) {
+                    scanningTies = false;
+                    scanOffset = 0;
+                    tiesComplete = true;
+                } else if (!passOver) {
+                    scanOffset += keyset.count;
+                } else if (++passes < MAX_TIE_PASSES) {
+                    // the order among the ties moved under us: go over the second again
+                    scanOffset = 0;
+                    passFoundNew = false;
+                } else {
+                    stuck = true;
+                }
+            } else if (!Objects.equals(keyset.nextSince(), since)) {
+                // reached a later second: the page held every manga left at since
+                since = keyset.nextSince();
+                seenAtSince = keyset.nextSeen();
+                tiesComplete = false;
+                finished = keyset.passedUntil || !fullPage;
+            } else if (fullPage && !keyset.sawLater) {
+                // a page of nothing but since: scan that second until every manga at it is taken
+                seenAtSince = keyset.nextSeen();
+                scanningTies = true;
+                scanOffset = tiesComplete ? 0 : keyset.count;
+                passes = 0;
+                passFoundNew = !tiesComplete && keyset.acceptedAtSince > 0;
+                laterTotalAsked = false;
+                laterTotal = null;
+                tiesComplete = false;
+            } else {
+                // A short page means nothing newer exists (or only past the segment's upper bound)
+                seenAtSince = keyset.nextSeen();
+                finished = true;
+            }
+            // passing the upper bound means the next segment takes over
+            return finished || (!scanningTies && keyset.passedUntil);
+        }
+    }
+    
+    /**
+     * Keyset bookkeeping for one page: which items are new, and where the next page starts
+     */
+    static final class KeysetPage {
+        private final CursorField field;
+        private final String since;
+        private final Set<String> seenAtSince;
+        private final String until;
+        // only take manga at exactly since (scanning a crowded second)
+        private final boolean tiesOnly;
+        
+        private String newest;
+        private final Set<String> idsAtNewest = new HashSet<>();
+        // items fed through, taken or not
+        int count;
+        int accepted;
+        // manga at since that weren't seen before
+        int acceptedAtSince;
+        // the page reached a second after since
+        boolean sawLater;
+        boolean passedUntil;
+        
+        KeysetPage(CursorField field, String since, Set<String> seenAtSince, String until, boolean tiesOnly) {
+            this.field = field;
+            this.since = since;
+            this.seenAtSince = seenAtSince;
+            this.until = until;
+            this.tiesOnly = tiesOnly;
+            this.newest = since;
+        }
+        
+        /**
+         * Track the item's position and report whether it should be imported
+         */
+        boolean accept(MangadexResponse.MangadexManga manga) {
+            count++;
+            String raw = field.valueOf(manga);
+            if (raw == null) {
+                if (tiesOnly) {
+                    return false;
+                }
+                accepted++;
+                return true;
+            }
+            String timestamp = toApiTimestamp(raw);
+            if (since != null && timestamp.compareTo(since) > 0) {
+                sawLater = true;
+            }
+            if (until != null && timestamp.compareTo(until) >= 0) {
+                passedUntil = true;
+                return false;
+            }
+            if (tiesOnly && !timestamp.equals(since)) {
+                return false;
+            }
+            
+            if (newest == null || timestamp.compareTo(newest) > 0) {
+                newest = timestamp;
+                idsAtNewest.clear();
+            }
+            if (timestamp.equals(newest)) {
+                idsAtNewest.add(manga.getId());
+            }
+            
+            if (since != null && timestamp.equals(since)) {
+                if (seenAtSince.contains(manga.getId())) {
+                    return false;
+                }
+                acceptedAtSince++;
+            }
+            accepted++;
+            return true;
+        }
+        
+        String nextSince() {
+            return newest;
+        }
+        
+        Set<String> nextSeen() {
+            if (newest != null && newest.equals(since)) {
+                // still on the same second: remember everything taken there so far
+                Set<String> seen = new HashSet<>(seenAtSince);
+                seen.addAll(idsAtNewest);
+                return seen;
+            }
+            return new HashSet<>(idsAtNewest);
+        }
+    }
+    
+    private MangadexDumpWriter openRecorder(ImportJob job) {
+        if (recordDir == null || recordDir.isBlank()) {
+            return null;
+        }
+        try {
+            return MangadexDumpWriter.create(Path.of(recordDir), job.getType(), objectMapper);
+        } catch (IOException e) {
+            log.error("Could not start recording to {}, importing without it", recordDir, e);
+            return null;
+        }
+    }
+    
+    /**
+     * Names of the dumps recorded under mangadex.import.record-dir, newest first
+     */
+    public List<String> listDumps() {
+        if (recordDir == null || recordDir.isBlank() || !Files.isDirectory(Path.of(recordDir))) {
+            return List.of();
+        }
+        try (var entries = Files.list(Path.of(recordDir))) {
+            return entries
+                .filter(dir -> Files.isRegularFile(dir.resolve(MangadexDumpWriter.MANGA_FILE)))
+                .map(dir -> dir.getFileName().toString())
+                .sorted(Comparator.reverseOrder())
+                .toList();
+        } catch (IOException e) {
+            log.error("Failed to list dumps in {}", recordDir, e);
+            return List.of();
+        }
+    }
+    
+    /**
+     * Resolve a dump name from {@link #listDumps()} to its directory.
+     * Only names directly under the record directory are accepted.
+     */
+    public Optional<Path> findDump(String name) {
+        if (recordDir == null || recordDir.isBlank() || name == null || name.isBlank()) {
+            return Optional.empty();
+        }
+        Path root = Path.of(recordDir).toAbsolutePath().normalize();
+        Path dump = root.resolve(name).normalize();
+        if (!root.equals(dump.getParent()) || !Files.isRegularFile(dump.resolve(MangadexDumpWriter.MANGA_FILE))) {
+            return Optional.empty();
+        }
+        return Optional.of(dump);
+    }
+    
+    /**
+     * Load a recorded dump (see mangadex.import.record-dir) into the database without touching the API.
+     * Goes through the same transform and persist stages as a live import, at whatever speed the
+     * database allows. Authors missing from the dump come from the author cache or stay unknown.
+     * 
+     * @param dumpDirectory Directory containing manga.ndjson.gz and authors.ndjson.gz
+     * @param job Job to report progress to and check for cancellation
+     * @return ImportResult with statistics
+     */
+    public ImportResult replayDump(Path dumpDirectory, ImportJob job) {
+        log.info("Replaying MangaDex dump from {}", dumpDirectory);
+        ImportResult result = job.getResult();
+        
+        try (MangadexDumpReader reader = MangadexDumpReader.open(dumpDirectory, objectMapper)) {
+            Map<String, String> recordedAuthors = reader.authors();
+            Function<Set<String>, Map<String, String>> authorFetcher = ids -> {
+                Map<String, String> found = new HashMap<>();
+                for (String id : ids) {
+                    String name = recordedAuthors.get(id);
+                    if (name != null) {
+                        found.put(id, name);
+                    }
+                }
+                return found;
+            };
+            
+            bulkWriter.loadIndex();
+            job.setWorkerCounts(1, transformWorkers, persistWorkers);
+            ImportPipeline pipeline = new ImportPipeline(
+                transformWorkers, persistWorkers, queueCapacity,
+                page -> timed(job.transformStage(), () -> transformBatch(page, result, authorFetcher, null)),
+                (batch, source) -> timed(job.persistStage(), () -> persistBatch(batch, source, result, keepRaw)),
+                (page, stage, error) -> deadLetterPage(page, stage, error, result));
+            
+            List<MangadexResponse.MangadexManga> chunk = new ArrayList<>();
+            int read = 0;
+            try {
+                while (!job.isCancelRequested()) {
+                    long readStart = System.nanoTime();
+                    MangadexResponse.MangadexManga manga = reader.nextManga();
+                    while (manga != null) {
+                        chunk.add(manga);
+                        if (chunk.size() >= batchSize) {
+                            break;
+                        }
+                        manga = reader.nextManga();
+                    }
+                    job.fetchStage().record(System.nanoTime() - readStart);
+                    if (chunk.isEmpty()) {
+                        result.setReachedEnd(true);
+                        break;
+                    }
+                    read += chunk.size();
+                    submitTimed(pipeline, chunk, job);
+                    job.recordPage(null, read, null);
+                }
+                pipeline.finish();
+            } catch (InterruptedException e) {
+                log.error("Replay interrupted", e);
+                Thread.currentThread().interrupt();
+                pipeline.abort();
+            } catch (IOException | RuntimeException e) {
+                // keep what's already been read; a truncated dump still loads up to the damage
+                log.error("Failed reading dump {} after {} manga", dumpDirectory, read, e);
+                result.addError("dump-" + dumpDirectory.getFileName() + "-line-" + (read + chunk.size() + 1), e.getMessage());
+                chunk.clear();
+                try {
+                    pipeline.finish();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    pipeline.abort();
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read MangaDex dump " + dumpDirectory + ": " + e.getMessage(), e);
+        }
+        
+        log.info(result.toString());
+        return result;
+    }
+    
+    /**
+     * Dead-lettered manga waiting for a retry, most recent failure first
+     */
+    public List<ImportDeadLetterStore.DeadLetter> listDeadLetters(int limit, int offset) {
+        return deadLetters.list(limit, offset);
+    }
+    
+    public int countDeadLetters() {
+        return deadLetters.count();
+    }
+    
+    public Optional<ImportDeadLetterStore.DeadLetter> findDeadLetter(String dexId) {
+        return deadLetters.find(dexId);
+    }
+    
+    /**
+     * Re-import dead-lettered manga by id, batchSize ids per /manga?ids[]=... request, through the
+     * usual transform and persist stages. Titles that get in are removed from the dead-letter table;
+     * the rest stay there with their attempt count bumped.
+     * 
+     * @param dexIds Ids to retry, or null/empty for the oldest failures up to maxManga
+     * @param maxManga Cap on how many dead letters to pick up when no ids are given
+     * @param job Job to report progress to and check for cancellation
+     * @return ImportResult with statistics for the retried titles
+     */
+    public ImportResult retryDeadLetters(List<String> dexIds, int maxManga, ImportJob job) {
+        List<String> ids = dexIds != null && !dexIds.isEmpty()
+            ? dexIds.stream().distinct().toList()
+            : deadLetters.pendingIds(maxManga);
+        ImportResult result = job.getResult();
+        log.info("Retrying {} dead-lettered manga", ids.size());
+        job.setExpectedTotal(ids.size());
+        
+        Function<Set<String>, Map<String, String>> authorFetcher = this::fetchAuthorsBatch;
+        bulkWriter.loadIndex();
+        job.setWorkerCounts(1, transformWorkers, persistWorkers);
+        ImportPipeline pipeline = new ImportPipeline(
+            transformWorkers, persistWorkers, queueCapacity,
+            page -> timed(job.transformStage(), () -> transformBatch(page, result, authorFetcher, null)),
+            (batch, source) -> timed(job.persistStage(), () -> {
+                Set<String> failed = persistBatch(batch, source, result, keepRaw);
+                List<String> saved = batch.stream()
+                    .map(Manga::getDexId)
+                    .filter(id -> !failed.contains(id))
+                    .toList();
+                deadLetters.resolve(saved);
+                return null;
+            }),
+            (page, stage, error) -> deadLetterPage(page, stage, error, result));
+        
+        int chunkSize = Math.max(1, Math.min(batchSize, 100));
+        try {
+            for (int start = 0; start < ids.size() && !job.isCancelRequested(); start += chunkSize) {
+                List<String> chunkIds = ids.subList(start, Math.min(ids.size(), start + chunkSize));
+                List<MangadexResponse.MangadexManga> chunk = new ArrayList<>();
                 
-                // Process this batch
-                processBatch(response.getData(), result);
-                
-                int returnedCount = response.getData().size();
-                fetchedCount += returnedCount;
-                offsetWithinBatch += returnedCount;
+                long fetchStart = System.nanoTime();
+                MangadexPageDecoder.PageSummary page = fetchMangaByIds(chunkIds, chunk::add);
+                job.fetchStage().record(System.nanoTime() - fetchStart);
                 
-                // Check if we need to move cursor (approaching 10k limit)
-                if (offsetWithinBatch >= 9900) {
-                    // Extract the last manga's createdAt timestamp for next cursor
-                    var lastManga = response.getData().get(response.getData().size() - 1);
-                    if (lastManga.getAttributes() != null && lastManga.getAttributes().getCreatedAt() != null) {
-                        currentCursor = lastManga.getAttributes().getCreatedAt();
-                        result.setLastCreatedAt(currentCursor);
-                        offsetWithinBatch = 0; // Reset offset for new cursor window
-                        log.info("Moving to new cursor window: {}", currentCursor);
-                    }
+                if (page == null) {
+                    result.addError("ids-" + chunkIds.get(0), "Failed to fetch " + chunkIds.size() + " manga by id");
+                    deadLetters.record(withoutPayload(chunkIds), ImportDeadLetterStore.STAGE_FETCH, "Failed to fetch by id");
+                    continue;
                 }
                 
-                log.info("Progress: {}/{} manga processed (cursor: {}, offset: {})", 
-                    fetchedCount, maxManga, currentCursor != null ? currentCursor : "START", offsetWithinBatch);
+                // MangaDex leaves out ids it no longer has or that are outside the content ratings we import
+                Set<String> returned = new HashSet<>();
+                chunk.forEach(manga -> returned.add(manga.getId()));
+                List<String> missing = chunkIds.stream().filter(id -> !returned.contains(id)).toList();
+                if (!missing.isEmpty()) {
+                    log.warn("{} dead-lettered manga weren't returned by MangaDex", missing.size());
+                    missing.forEach(id -> result.addError(id, "Not returned by /manga"));
+                    deadLetters.record(withoutPayload(missing), ImportDeadLetterStore.STAGE_FETCH, "Not returned by /manga");
+                }
                 
-                // If we got fewer results than requested, we've reached the end
-                if (returnedCount < limit) {
-                    log.info("Received fewer results than requested. Reached end of catalog.");
+                submitTimed(pipeline, chunk, job);
+                job.recordPage(null, start + chunkIds.size(), null);
+            }
+            result.setReachedEnd(!job.isCancelRequested());
+            pipeline.finish();
+        } catch (InterruptedException e) {
+            log.error("Dead-letter retry interrupted", e);
+            Thread.currentThread().interrupt();
+            pipeline.abort();
+        }
+        
+        log.info(result.toString());
+        return result;
+    }
+    
+    private static Map<String, MangadexResponse.MangadexManga> withoutPayload(List<String> ids) {
+        Map<String, MangadexResponse.MangadexManga> failed = new HashMap<>();
+        ids.forEach(id -> failed.put(id, null));
+        return failed;
+    }
+    
+    /**
+     * Fetch specific manga by id (at most 100 per request)
+     * 
+     * @return Summary of the page, or null if it couldn't be fetched
+     */
+    private MangadexPageDecoder.PageSummary fetchMangaByIds(List<String> ids, MangadexPageDecoder.MangaSink sink)
+            throws InterruptedException {
+        try {
+            JsonNode response = apiClient.get()
+                .uri(uriBuilder -> {
+                    var builder = mangaFilters(uriBuilder.path("/manga"))
+                        .queryParam("limit", ids.size());
+                    for (String id : ids) {
+                        builder.queryParam("ids[]", id);
+                    }
+                    return builder.build();
+                })
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .block();
+            return pageDecoder.buffered(response, sink, null);
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Failed to fetch {} manga by id", ids.size(), e);
+            return null;
+        }
+    }
+    
+    /**
+     * Rebuild manga rows from the payloads kept in manga_raw, without calling MangaDex.
+     * Runs the current {@link MangadexTransformer} over every stored title through the usual
+     * transform workers and bulk writer, so after a new field is added to the transformer a
+     * local batch job fills it in. Author names come from the author cache and table only.
+     * Rows whose fingerprint doesn't change are skipped as in a normal re-import.
+     * 
+     * @param job Job to report progress to and check for cancellation
+     * @return ImportResult with statistics
+     */
+    public ImportResult retransformStored(ImportJob job) {
+        ImportResult result = job.getResult();
+        long stored = rawStore.count();
+        log.info("Re-transforming {} stored MangaDex payloads", stored);
+        job.setExpectedTotal((int) Math.min(Integer.MAX_VALUE, stored));
+        
+        // no API calls: authors the cache has never seen stay unknown
+        Function<Set<String>, Map<String, String>> authorFetcher = ids -> Map.of();
+        bulkWriter.loadIndex();
+        job.setWorkerCounts(1, transformWorkers, persistWorkers);
+        ImportPipeline pipeline = new ImportPipeline(
+            transformWorkers, persistWorkers, queueCapacity,
+            page -> timed(job.transformStage(), () -> transformBatch(page, result, authorFetcher, null)),
+            (batch, source) -> timed(job.persistStage(), () -> persistBatch(batch, source, result, false)),
+            (page, stage, error) -> deadLetterPage(page, stage, error, result));
+        
+        String after = null;
+        int read = 0;
+        try {
+            while (!job.isCancelRequested()) {
+                long readStart = System.nanoTime();
+                List<MangaRawStore.Stored> page = rawStore.page(after, batchSize);
+                job.fetchStage().record(System.nanoTime() - readStart);
+                if (page.isEmpty()) {
+                    result.setReachedEnd(true);
                     break;
                 }
                 
-                // Rate limiting
-                Thread.sleep(rateLimitMs);
-                
-            } catch (InterruptedException e) {
-                log.error("Import interrupted", e);
-                Thread.currentThread().interrupt();
-                break;
-            } catch (Exception e) {
-                log.error("Error during import at cursor {} offset {}", currentCursor, offsetWithinBatch, e);
-                result.addError("cursor-" + currentCursor + "-offset-" + offsetWithinBatch, e.getMessage());
-                // Try to continue
-                offsetWithinBatch += batchSize;
+                List<MangadexResponse.MangadexManga> chunk = new ArrayList<>(page.size());
+                for (MangaRawStore.Stored row : page) {
+                    MangadexResponse.MangadexManga manga = null;
+                    if (row.raw() != null) {
+                        try {
+                            // mapped with today's DTOs, so fields added since the import are picked up
+                            manga = pageDecoder.decode(row.raw());
+                        } catch (IOException e) {
+                            log.warn("Stored payload of manga {} doesn't map", row.dexId(), e);
+                        }
+                    }
+                    if (manga != null) {
+                        chunk.add(manga);
+                    } else {
+                        result.addError(row.dexId(), "Stored payload couldn't be decoded");
+                    }
+                }
+                after = page.get(page.size() - 1).dexId();
+                read += page.size();
+                submitTimed(pipeline, chunk, job);
+                job.recordPage(after, read, null);
             }
+            pipeline.finish();
+        } catch (InterruptedException e) {
+            log.error("Re-transform interrupted", e);
+            Thread.currentThread().interrupt();
+            pipeline.abort();
         }
         
         log.info(result.toString());
         return result;
     }
     
+    /**
+     * Hand the pending chunk to the pipeline and clear it, returning how long that blocked
+     */
+    private long submitTimed(ImportPipeline pipeline, List<MangadexResponse.MangadexManga> chunk, ImportJob job)
+            throws InterruptedException {
+        return submitTimed(pipeline, chunk, job, null);
+    }
+    
+    /**
+     * Same, counting the chunk against the page's commit mark until it has been persisted
+     */
+    private long submitTimed(ImportPipeline pipeline, List<MangadexResponse.MangadexManga> chunk, ImportJob job,
+            CommitTracker.Mark mark) throws InterruptedException {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        if (mark != null) {
+            mark.retain();
+            pipeline.submit(chunk, mark::release, mark::lose);
+        } else {
+            pipeline.submit(chunk);
+        }
+        chunk.clear();
+        long blocked = System.nanoTime() - start;
+        job.backpressureStage().record(blocked);
+        return blocked;
+    }
+    
+    private static <T> T timed(ImportJob.StageStats stage, Supplier<T> work) {
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            stage.record(System.nanoTime() - start);
+        }
+    }
+    
+    /**
+     * Newest or oldest manga on the timeline, plus the catalog size reported alongside it
+     */
+    private record Boundary(String timestamp, int total) {}
+    
+    private Boundary fetchBoundary(CursorField field, String direction) {
+        try {
+            MangadexResponse response = apiClient.get()
+                .uri(uriBuilder -> mangaList(uriBuilder.path("/manga"), field, direction)
+                    .queryParam("limit", 1)
+                    .build())
+                .retrieve()
+                .bodyToMono(MangadexResponse.class)
+                .block();
+            if (response == null || response.getData() == null || response.getData().isEmpty()) {
+                return null;
+            }
+            String timestamp = field.valueOf(response.getData().get(0));
+            return timestamp != null
+                ? new Boundary(toApiTimestamp(timestamp), response.getTotal() != null ? response.getTotal() : 0)
+                : null;
+        } catch (Exception e) {
+            log.error("Failed to fetch {} {} boundary", direction, field.param, e);
+            return null;
+        }
+    }
+    
+    /**
+     * How many manga have the field at or after since (the listing's total), or null if that
+     * couldn't be fetched
+     */
+    private Integer fetchTotalSince(CursorField field, String since) {
+        try {
+            MangadexResponse response = apiClient.get()
+                .uri(uriBuilder -> mangaList(uriBuilder.path("/manga"), field, "asc")
+                    .queryParam("limit", 1)
+                    .queryParam(field.param + "Since", since)
+                    .build())
+                .retrieve()
+                .bodyToMono(MangadexResponse.class)
+                .block();
+            return response != null ? response.getTotal() : null;
+        } catch (Exception e) {
+            log.warn("Failed to count manga with {} since {}", field.param, since, e);
+            return null;
+        }
+    }
+    
+    /**
+     * Query parameters shared by every /manga listing the importer makes
+     */
+    private static UriBuilder mangaList(UriBuilder builder, CursorField field, String direction) {
+        return mangaFilters(builder)
+            .queryParam("order[" + field.param + "]", direction);
+    }
+    
+    private static UriBuilder mangaFilters(UriBuilder builder) {
+        return builder
+            .queryParam("includes[]", "cover_art")
+            .queryParam("contentRating[]", "safe")
+            .queryParam("contentRating[]", "suggestive")
+            .queryParam("contentRating[]", "erotica");
+    }
+    
     /**
      * Fetch a page from MangaDex API using cursor-based pagination.
+     * Each manga is handed to the sink as it's decoded (streaming mode) or once the page has been read.
      * 
-     * @param createdAtCursor The createdAt timestamp to start from (null for beginning)
-     * @param offset Offset within this cursor window (0-9999)
+     * @param field Timestamp the results are ordered and filtered by
+     * @param cursor The timestamp to start from (null for beginning)
+     * @param offset Offset into the manga at or after the cursor (0 unless paging through a crowded second)
      * @param limit Number of results to fetch
-     * @return MangadexResponse with manga data
+     * @param sink Receives each manga on the page
+     * @param recorder Records the page for offline replay, or null
+     * @return Summary of the page, or null if it couldn't be fetched
      */
-    private MangadexResponse fetchPageWithCursor(String createdAtCursor, int offset, int limit) {
-        int attempt = 0;
-        Exception lastException = null;
-
-        while (attempt < maxRetries) {
-            try {
-                return apiClient.get()
-                    .uri(uriBuilder -> {
-                        var builder = uriBuilder
-                            .path("/manga")
-                            .queryParam("limit", limit)
-                            .queryParam("offset", offset)
-                            .queryParam("includes[]", "cover_art")
-                            .queryParam("contentRating[]", "safe")
-                            .queryParam("contentRating[]", "suggestive")
-                            .queryParam("contentRating[]", "erotica")
-                            .queryParam("order[createdAt]", "asc");
-                        
-                        // Add cursor if provided - CRITICAL: Must be properly encoded!
-                        if (createdAtCursor != null) {
-                            // UriBuilder handles encoding automatically
-                            builder.queryParam("createdAtSince", createdAtCursor);
-                        }
-
-                        return builder.build();
-                    })
-                    .retrieve()
-                    .bodyToMono(MangadexResponse.class)
-                    .timeout(Duration.ofSeconds(30))
-                    .block();
-
-            } catch (Exception e) {
-                lastException = e;
-                attempt++;
-                log.warn("Fetch attempt {} failed: {}. Retrying...", attempt, e.getMessage());
+    private MangadexPageDecoder.PageSummary fetchPageWithCursor(
+            CursorField field, String cursor, int offset, int limit, MangadexPageDecoder.MangaSink sink,
+            MangadexDumpWriter recorder) throws InterruptedException {
+        // Throttling and retries (429/5xx, with backoff) happen in the mangadexWebClient filter
+        try {
+            WebClient.ResponseSpec response = apiClient.get()
+                .uri(uriBuilder -> {
+                    var builder = mangaList(uriBuilder.path("/manga"), field, "asc")
+                        .queryParam("limit", limit)
+                        .queryParam("offset", offset);
+                    
+                    // Add cursor if provided - CRITICAL: Must be properly encoded!
+                    if (cursor != null) {
+                        // UriBuilder handles encoding automatically
+                        builder.queryParam(field.param + "Since", toApiTimestamp(cursor));
+                    }
 
-                try {
-                    Thread.sleep(1000 * attempt);
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
+                    return builder.build();
+                })
+                .retrieve();
+            
+            if (streamingDecode) {
+                return pageDecoder.stream(response.bodyToFlux(DataBuffer.class), sink, recorder);
             }
-        }
+            return pageDecoder.buffered(response.bodyToMono(JsonNode.class).block(), sink, recorder);
 
-        log.error("Failed to fetch after {} attempts", maxRetries, lastException);
-        return null;
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Failed to fetch page at cursor {} offset {}", cursor, offset, e);
+            return null;
+        }
+    }
+    
+    /**
+     * Convert a MangaDex attribute timestamp (2021-04-19T21:45:59+00:00) into the
+     * offset-less UTC form the *Since query parameters require.
+     * Values already in that form (e.g. a cursor typed in by an admin) pass through unchanged.
+     */
+    static String toApiTimestamp(String timestamp) {
+        try {
+            return OffsetDateTime.parse(timestamp)
+                .withOffsetSameInstant(ZoneOffset.UTC)
+                .toLocalDateTime()
+                .format(API_TIMESTAMP);
+        } catch (DateTimeParseException e) {
+            return timestamp;
+        }
     }
     
     /**
-     * Process a batch of manga - transform and save to database
-     * Uses batch author fetching for better performance
+     * Transform stage - resolve authors and map a page of MangaDex manga to our entities.
+     * Uses the author cache plus batch author fetching for better performance
+     * 
+     * @param authorFetcher Looks up authors the cache doesn't know (the API, or a dump when replaying)
+     * @param recorder Records the resolved author names for offline replay, or null
      */
-    @Transactional
-    protected void processBatch(List<MangadexResponse.MangadexManga> dexMangas, ImportResult result) {
-        List<Manga> toSave = new ArrayList<>();
+    private List<Manga> transformBatch(List<MangadexResponse.MangadexManga> dexMangas, ImportResult result,
+            Function<Set<String>, Map<String, String>> authorFetcher, MangadexDumpWriter recorder) {
+        List<Manga> transformed = new ArrayList<>();
         
         // Step 1: Collect all unique author IDs from this batch
         Set<String> authorIds = new HashSet<>();
@@ -261,8 +1414,11 @@ public class MangadexImporter {
         
         log.debug("Collected {} unique author IDs from batch of {} manga", authorIds.size(), dexMangas.size());
         
-        // Step 2: Fetch all authors in one batch request
-        Map<String, String> authorIdToName = fetchAuthorsBatch(authorIds);
+        // Step 2: Resolve authors from the cache, fetching only unseen/stale ones in one batch request
+        Map<String, String> authorIdToName = authorCache.resolve(authorIds, authorFetcher);
+        if (recorder != null) {
+            recorder.recordAuthors(authorIdToName);
+        }
         
         // Step 3: Transform each manga with the pre-fetched author name and cover
         for (MangadexResponse.MangadexManga dexManga : dexMangas) {
@@ -278,34 +1434,120 @@ public class MangadexImporter {
                 
                 // Transform MangaDex object to our entity
                 Manga manga = transformer.transform(dexManga, authorName, coverFileName);
-                
-                // Check if this manga already exists in our database
-                Optional<Manga> existing = mangaRepository.findByDexId(manga.getDexId());
-                
-                if (existing.isPresent()) {
-                    // Update existing manga
-                    Manga existingManga = existing.get();
-                    updateExistingManga(existingManga, manga);
-                    toSave.add(existingManga);
-                    result.incrementUpdated();
-                } else {
-                    // New manga
-                    toSave.add(manga);
-                    result.incrementInserted();
-                }
+                manga.setContentHash(MangaFingerprint.of(manga));
+                transformed.add(manga);
                 
             } catch (Exception e) {
                 log.error("Error processing manga: {}", dexManga.getId(), e);
-                result.incrementErrors();
+                result.addError(dexManga.getId(), e.getMessage());
+                if (dexManga.getId() != null) {
+                    deadLetters.record(dexManga.getId(), ImportDeadLetterStore.STAGE_TRANSFORM, describe(e), dexManga);
+                }
             }
         }
         
-        // Batch save to database
-        if (!toSave.isEmpty()) {
-            mangaRepository.saveAll(toSave);
-            log.info("Saved batch of {} manga (new: {}, updated: {})", 
-                toSave.size(), result.getNewInserted(), result.getUpdated());
+        return transformed;
+    }
+    
+    /**
+     * Persist stage - upsert a transformed batch in one set-based transaction.
+     * Counters are only bumped once the transaction has committed.
+     * 
+     * If the batch fails, its rows are written one at a time so a single bad title doesn't
+     * take the rest of the page down with it; whatever still fails is dead-lettered.
+     * 
+     * @param source The MangaDex page the batch was transformed from
+     * @param saveRaw Whether to store the source elements in manga_raw as well
+     * @return dexIds of the rows that couldn't be saved
+     */
+    private Set<String> persistBatch(List<Manga> batch, List<MangadexResponse.MangadexManga> source, ImportResult result,
+            boolean saveRaw) {
+        if (saveRaw) {
+            rawStore.save(source);
+        }
+        try {
+            MangaBulkWriter.UpsertResult saved = bulkWriter.upsert(batch);
+            
+            result.addInserted(saved.inserted());
+            result.addUpdated(saved.updated());
+            result.addSkipped(saved.skipped());
+            prefetchCovers(batch, saved);
+            log.info("Saved batch of {} manga (new: {}, updated: {}, unchanged: {})", 
+                batch.size(), result.getNewInserted(), result.getUpdated(), result.getSkipped());
+            return Set.of();
+            
+        } catch (Exception e) {
+            log.error("Failed to save batch of {} manga, saving them one at a time", batch.size(), e);
+        }
+        
+        Map<String, MangadexResponse.MangadexManga> sourceById = new HashMap<>();
+        for (MangadexResponse.MangadexManga dexManga : source) {
+            sourceById.put(dexManga.getId(), dexManga);
         }
+        Set<String> failed = new HashSet<>();
+        for (Manga manga : batch) {
+            try {
+                MangaBulkWriter.UpsertResult saved = bulkWriter.upsert(List.of(manga));
+                result.addInserted(saved.inserted());
+                result.addUpdated(saved.updated());
+                result.addSkipped(saved.skipped());
+                prefetchCovers(List.of(manga), saved);
+            } catch (Exception e) {
+                log.error("Failed to save manga {}", manga.getDexId(), e);
+                result.addError(manga.getDexId(), e.getMessage());
+                failed.add(manga.getDexId());
+                deadLetters.record(manga.getDexId(), ImportDeadLetterStore.STAGE_PERSIST, describe(e),
+                    sourceById.get(manga.getDexId()));
+            }
+        }
+        return failed;
+    }
+    
+    /**
+     * Queue covers of newly inserted titles for background download (cover_url is only
+     * ever written on insert, so those are the only covers an import changes)
+     */
+    private void prefetchCovers(List<Manga> batch, MangaBulkWriter.UpsertResult saved) {
+        if (!coverPrefetcher.isEnabled() || saved.insertedDexIds().isEmpty()) {
+            return;
+        }
+        List<String> coverUrls = new ArrayList<>();
+        for (Manga manga : batch) {
+            if (manga.getCoverUrl() != null && saved.insertedDexIds().contains(manga.getDexId())) {
+                coverUrls.add(manga.getCoverUrl());
+            }
+        }
+        coverPrefetcher.enqueue(coverUrls);
+    }
+    
+    /**
+     * A pipeline stage threw on a whole page: dead-letter every title on it so they can be retried
+     * 
+     * @return whether that worked; if not the page counts as lost and holds its checkpoint back
+     */
+    private boolean deadLetterPage(List<MangadexResponse.MangadexManga> page, String stage, RuntimeException error,
+            ImportResult result) {
+        Map<String, MangadexResponse.MangadexManga> failed = new LinkedHashMap<>();
+        for (MangadexResponse.MangadexManga manga : page) {
+            // without an id a title can't be dead-lettered, nor fetched again by id
+            if (manga.getId() != null) {
+                failed.put(manga.getId(), manga);
+                result.addError(manga.getId(), error.getMessage());
+            }
+        }
+        return deadLetters.record(failed, stage, describe(error));
+    }
+    
+    /**
+     * Failure reason worth keeping: the deepest cause, which is where the SQL error or bad value is
+     */
+    private static String describe(Throwable e) {
+        Throwable root = e;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        String message = root.getMessage() != null ? root.getMessage() : root.getClass().getSimpleName();
+        return root == e ? message : root.getClass().getSimpleName() + ": " + message;
     }
     
     /**
@@ -369,7 +1611,6 @@ public class MangadexImporter {
                 })
                 .retrieve()
                 .bodyToMono(AuthorBatchWrapper.class)
-                .timeout(Duration.ofSeconds(30))
                 .block();
             
             if (response == null || response.getData() == null) {
@@ -404,19 +1645,6 @@ public class MangadexImporter {
         public void setData(List<AuthorResponse.AuthorData> data) { this.data = data; }
     }
     
-    /**
-     * Update fields of an existing manga with new data
-     */
-    private void updateExistingManga(Manga existing, Manga updated) {
-        existing.setTitle(updated.getTitle());
-        existing.setAuthor(updated.getAuthor());
-        existing.setYear(updated.getYear());
-        existing.setStatus(updated.getStatus());
-        existing.setDescription(updated.getDescription());
-        existing.setAltTitles(updated.getAltTitles());
-        existing.setGenres(updated.getGenres());
-    }
-    
     /**
      * Get total count of manga available on MangaDex
      */
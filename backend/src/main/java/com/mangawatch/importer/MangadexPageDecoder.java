@@ -0,0 +1,126 @@
+package com.mangawatch.importer;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mangawatch.dto.MangadexResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Turns a MangaDex /manga response into a sequence of manga handed to a sink.
+ *
+ * The streaming mode parses the body as it arrives and decodes the "data" array one
+ * element at a time, so neither the raw page nor the full response tree is ever held
+ * in memory and WebClient's maxInMemorySize doesn't apply. The buffered mode walks an
+ * already read JSON body through the same sink.
+ *
+ * Either way each manga keeps its element as MangaDex sent it ({@link MangadexResponse.MangadexManga#getRaw()}),
+ * which is what manga_raw stores, and with a {@link MangadexDumpWriter} attached every element
+ * is also recorded as it passes through.
+ */
+class MangadexPageDecoder {
+
+    // how many DataBuffers the input stream requests ahead of the parser
+    private static final int PREFETCH_BUFFERS = 16;
+
+    /**
+     * Receives decoded manga one by one. May block (e.g. on a full pipeline).
+     */
+    interface MangaSink {
+        void accept(MangadexResponse.MangadexManga manga) throws InterruptedException;
+    }
+
+    /**
+     * What the importer needs to know about a page once its items have been handed off
+     */
+    record PageSummary(int count, MangadexResponse.MangadexManga last, Integer total) {}
+
+    private final ObjectMapper objectMapper;
+
+    MangadexPageDecoder(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Decode a response body incrementally, handing each element of "data" to the sink as soon as it's parsed.
+     *
+     * @param recorder Receives each raw element before it's mapped, or null when not recording
+     */
+    PageSummary stream(Publisher<DataBuffer> body, MangaSink sink, MangadexDumpWriter recorder)
+            throws IOException, InterruptedException {
+        int count = 0;
+        MangadexResponse.MangadexManga last = null;
+        Integer total = null;
+
+        try (InputStream in = DataBufferUtils.subscriberInputStream(body, PREFETCH_BUFFERS);
+             JsonParser parser = objectMapper.getFactory().createParser(in)) {
+
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON object from MangaDex");
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+
+                if ("data".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        // keep the element exactly as MangaDex sent it, not just the fields we map
+                        JsonNode raw = objectMapper.readTree(parser);
+                        if (recorder != null) {
+                            recorder.recordManga(raw);
+                        }
+                        MangadexResponse.MangadexManga manga = decode(raw);
+                        sink.accept(manga);
+                        last = manga;
+                        count++;
+                    }
+                } else if ("total".equals(field) && value == JsonToken.VALUE_NUMBER_INT) {
+                    total = parser.getIntValue();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+
+        return new PageSummary(count, last, total);
+    }
+
+    /**
+     * Feed a page that was read in one piece through the same sink
+     */
+    PageSummary buffered(JsonNode body, MangaSink sink, MangadexDumpWriter recorder)
+            throws IOException, InterruptedException {
+        Integer total = body != null && body.path("total").isInt() ? body.get("total").intValue() : null;
+        if (body == null || !body.path("data").isArray()) {
+            return new PageSummary(0, null, total);
+        }
+        int count = 0;
+        MangadexResponse.MangadexManga last = null;
+        for (JsonNode raw : body.get("data")) {
+            if (recorder != null) {
+                recorder.recordManga(raw);
+            }
+            last = decode(raw);
+            sink.accept(last);
+            count++;
+        }
+        return new PageSummary(count, last, total);
+    }
+
+    /**
+     * Map one element of "data", keeping the element itself on the manga
+     */
+    MangadexResponse.MangadexManga decode(JsonNode raw) throws IOException {
+        MangadexResponse.MangadexManga manga = objectMapper.treeToValue(raw, MangadexResponse.MangadexManga.class);
+        manga.setRaw(raw);
+        return manga;
+    }
+}
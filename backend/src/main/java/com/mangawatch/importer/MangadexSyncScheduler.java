@@ -0,0 +1,41 @@
+package com.mangawatch.importer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs the incremental updatedAt sync on a schedule (nightly by default).
+ * Skips the run if another import is in progress or no full import has seeded the high-water mark yet.
+ */
+@Component
+@ConditionalOnProperty(name = "mangadex.sync.enabled", havingValue = "true")
+public class MangadexSyncScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(MangadexSyncScheduler.class);
+
+    private final MangadexImporter importer;
+    private final ImportJobManager jobManager;
+
+    public MangadexSyncScheduler(MangadexImporter importer, ImportJobManager jobManager) {
+        this.importer = importer;
+        this.jobManager = jobManager;
+    }
+
+    @Scheduled(cron = "${mangadex.sync.cron:0 0 3 * * *}")
+    public void runDeltaSync() {
+        if (importer.getHighWaterMark().isEmpty()) {
+            log.warn("Skipping scheduled delta sync: no high-water mark recorded yet");
+            return;
+        }
+
+        try {
+            ImportJob job = jobManager.start("sync", importer::syncUpdatedSince);
+            log.info("Scheduled delta sync started as job {}", job.getId());
+        } catch (IllegalStateException e) {
+            log.info("Skipping scheduled delta sync: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.mangawatch.media;
+
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.mangawatch.config.TokenBucket;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background download of covers for titles an import has just added, so the first person
+ * to browse them gets covers from the {@link CoverStore} instead of a burst of upstream requests.
+ *
+ * The importer hands over cover URLs without blocking; a single worker drains them at its own
+ * rate (covers.prefetch.requests-per-second), separate from the MangaDex API budget. When the
+ * queue is full new URLs are dropped; those covers are fetched lazily as before.
+ * Only runs when mangadex.import.prefetch-covers is on and a cover store directory is set.
+ */
+@Component
+public class CoverPrefetcher {
+
+    private static final Logger log = LoggerFactory.getLogger(CoverPrefetcher.class);
+
+    private final CoverService coverService;
+    private final boolean enabled;
+    private final TokenBucket rateLimiter;
+    private final BlockingQueue<ParsedCover> queue;
+
+    private final AtomicLong downloaded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile Thread worker;
+
+    public CoverPrefetcher(
+            CoverService coverService,
+            CoverStore coverStore,
+            @Value("${mangadex.import.prefetch-covers:false}") boolean prefetchCovers,
+            @Value("${covers.prefetch.requests-per-second:2}") double requestsPerSecond,
+            @Value("${covers.prefetch.burst:2}") int burst,
+            @Value("${covers.prefetch.queue-capacity:20000}") int queueCapacity) {
+        this.coverService = coverService;
+        this.enabled = prefetchCovers && coverStore.isEnabled();
+        this.rateLimiter = new TokenBucket(requestsPerSecond, burst);
+        this.queue = new LinkedBlockingQueue<>(Math.max(1, queueCapacity));
+        if (prefetchCovers && !coverStore.isEnabled()) {
+            log.warn("mangadex.import.prefetch-covers is on but covers.store-dir isn't set; not prefetching");
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queue covers for download. Never blocks; URLs that aren't MangaDex cover URLs are ignored.
+     */
+    public void enqueue(Collection<String> coverUrls) {
+        if (!enabled || coverUrls.isEmpty()) {
+            return;
+        }
+        ensureWorker();
+        for (String url : coverUrls) {
+            ParsedCover cover = parse(url);
+            if (cover != null && !queue.offer(cover)) {
+                dropped.incrementAndGet();
+            }
+        }
+    }
+
+    public int getQueued() { return queue.size(); }
+    public long getDownloaded() { return downloaded.get(); }
+    public long getFailed() { return failed.get(); }
+    public long getDropped() { return dropped.get(); }
+
+    private synchronized void ensureWorker() {
+        if (worker != null) {
+            return;
+        }
+        worker = new Thread(this::drain, "cover-prefetch");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                ParsedCover cover = queue.take();
+                rateLimiter.acquire();
+                try {
+                    if (coverService.prefetch(cover.dexId(), cover.fileName())) {
+                        downloaded.incrementAndGet();
+                    } else {
+                        failed.incrementAndGet();
+                    }
+                } catch (RuntimeException e) {
+                    failed.incrementAndGet();
+                    log.debug("Cover prefetch failed for {}/{}", cover.dexId(), cover.fileName(), e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // https://uploads.mangadex.org/covers/{dexId}/{fileName}
+    private static ParsedCover parse(String url) {
+        if (url == null || url.isBlank()) {
+            return null;
+        }
+        try {
+            String[] parts = URI.create(url).getPath().split("/");
+            return parts.length >= 4 && "covers".equals(parts[1]) ? new ParsedCover(parts[2], parts[3]) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        Thread running = worker;
+        if (running != null) {
+            running.interrupt();
+        }
+        if (downloaded.get() + failed.get() + dropped.get() > 0) {
+            log.info("Cover prefetch stopped: {} downloaded, {} failed, {} dropped, {} still queued",
+                downloaded.get(), failed.get(), dropped.get(), queue.size());
+        }
+    }
+}
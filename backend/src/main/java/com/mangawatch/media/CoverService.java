@@ -1,5 +1,6 @@
 package com.mangawatch.media;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -20,6 +21,8 @@ public class CoverService {
 	
 	private final MangaRepository mangaRepository;
 	
+	private final CoverStore coverStore;
+	
 	private final Cache<String, CachedCover> cache = Caffeine.newBuilder()
 	        .maximumWeight(50_000_000) // 50MB total cache size
 	        .weigher((String key, CachedCover cover) -> cover.data.length)
@@ -28,15 +31,17 @@ public class CoverService {
 
 //    private final Map<String, CachedCover> cache = new ConcurrentHashMap<>();
 	
-    public CoverService(WebClient.Builder builder, MangaRepository mangaRepository) {
+    public CoverService(WebClient.Builder builder, MangaRepository mangaRepository, CoverStore coverStore,
+    		@Value("${mangadex.uploads-url:https://uploads.mangadex.org}") String uploadsUrl) {
         this.webClient = builder
-                .baseUrl("https://uploads.mangadex.org")
+                .baseUrl(uploadsUrl)
                 .codecs(configurer -> configurer
                         .defaultCodecs()
                         .maxInMemorySize(5 * 1024 * 1024)) // 5MB limit
                 .build();
         
         this.mangaRepository = mangaRepository;
+        this.coverStore = coverStore;
     }
     
     private ResponseEntity<byte[]> getCover(String dexId, String fileName) {
@@ -55,6 +60,17 @@ public class CoverService {
                     .body(cached.data);
         }
 
+        // Stored on disk (earlier fetch or import prefetch)
+        byte[] stored = coverStore.read(dexId, fileName).orElse(null);
+        if (stored != null) {
+            CachedCover fromStore = new CachedCover(stored, inferContentType(fileName));
+            cache.put(cacheKey, fromStore);
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(fromStore.contentType))
+                    .header(HttpHeaders.CACHE_CONTROL, "public, max-age=86400")
+                    .body(fromStore.data);
+        }
+
         // Cache miss → fetch
         return fetchAndCache(dexId, fileName, cacheKey);
     }
@@ -94,19 +110,44 @@ public class CoverService {
         return getCover(cover.dexId(), cover.fileName());
     }
     
+    /**
+     * Download a cover into the cover store ahead of the first request for it.
+     * Used by the import prefetch stage; covers already stored are left alone.
+     *
+     * @return false if the cover couldn't be downloaded
+     */
+    boolean prefetch(String dexId, String fileName) {
+        if (!isValid(dexId, fileName)) {
+            return false;
+        }
+        if (coverStore.contains(dexId, fileName)) {
+            return true;
+        }
+        ResponseEntity<byte[]> response = download(dexId, fileName);
+        if (response == null || response.getBody() == null) {
+            return false;
+        }
+        coverStore.write(dexId, fileName, response.getBody());
+        return true;
+    }
+    
+    private ResponseEntity<byte[]> download(String dexId, String fileName) {
+        return webClient
+                .get()
+                .uri("/covers/{dexId}/{fileName}", dexId, fileName)
+                .accept(MediaType.ALL)
+                .retrieve()
+                .toEntity(byte[].class)
+                .block(Duration.ofSeconds(15));
+    }
+    
     private ResponseEntity<byte[]> fetchAndCache(
             String dexId,
             String fileName,
             String cacheKey
     ) {
         try {
-            ResponseEntity<byte[]> response = webClient
-                    .get()
-                    .uri("/covers/{dexId}/{fileName}", dexId, fileName)
-                    .accept(MediaType.ALL)
-                    .retrieve()
-                    .toEntity(byte[].class)
-                    .block(Duration.ofSeconds(15));
+            ResponseEntity<byte[]> response = download(dexId, fileName);
 
             if (response == null || response.getBody() == null) {
                 return ResponseEntity.notFound().build();
@@ -124,6 +165,7 @@ public class CoverService {
             );
 
             cache.put(cacheKey, cached);
+            coverStore.write(dexId, fileName, cached.data);
 
             return ResponseEntity.ok()
                     .contentType(MediaType.parseMediaType(contentType))
@@ -0,0 +1,90 @@
+package com.mangawatch.media;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Covers kept on disk under covers.store-dir as {dexId}/{fileName}, so they survive restarts
+ * and the in-memory cache's expiry. Filled by {@link CoverService} on a cache miss and by
+ * {@link CoverPrefetcher} during imports. Disabled (every call a no-op) when no directory is set.
+ */
+@Component
+public class CoverStore {
+
+    private static final Logger log = LoggerFactory.getLogger(CoverStore.class);
+
+    // MangaDex ids are UUIDs; anything else could escape the store directory
+    private static final Pattern DEX_ID = Pattern.compile("[0-9a-fA-F-]{1,64}");
+
+    private final Path root;
+
+    public CoverStore(@Value("${covers.store-dir:}") String storeDir) {
+        this.root = storeDir == null || storeDir.isBlank() ? null : Path.of(storeDir).toAbsolutePath().normalize();
+        if (root != null) {
+            log.info("Storing covers under {}", root);
+        }
+    }
+
+    public boolean isEnabled() {
+        return root != null;
+    }
+
+    public boolean contains(String dexId, String fileName) {
+        Path file = resolve(dexId, fileName);
+        return file != null && Files.isRegularFile(file);
+    }
+
+    public Optional<byte[]> read(String dexId, String fileName) {
+        Path file = resolve(dexId, fileName);
+        if (file == null || !Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(Files.readAllBytes(file));
+        } catch (IOException e) {
+            log.warn("Failed to read stored cover {}", file, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Save a cover. Written to a temp file and moved into place, so readers never see half a
+     * file; failures are logged and the cover is simply fetched again next time.
+     */
+    public void write(String dexId, String fileName, byte[] data) {
+        Path file = resolve(dexId, fileName);
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), fileName, ".part");
+            try {
+                Files.write(temp, data);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to store cover {}", file, e);
+        }
+    }
+
+    private Path resolve(String dexId, String fileName) {
+        if (root == null || dexId == null || fileName == null
+                || !DEX_ID.matcher(dexId).matches()
+                || fileName.isBlank() || fileName.contains("/") || fileName.contains("\\") || fileName.contains("..")) {
+            return null;
+        }
+        return root.resolve(dexId).resolve(fileName);
+    }
+}
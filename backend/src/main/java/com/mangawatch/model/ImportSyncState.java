@@ -0,0 +1,33 @@
+package com.mangawatch.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Persisted position of an incremental MangaDex sync.
+ * highWaterMark is a MangaDex timestamp (yyyy-MM-ddTHH:mm:ss, UTC) that the next run pages from.
+ */
+@Entity
+@Table(name = "import_sync_state")
+public class ImportSyncState {
+    @Id
+    private String name;
+
+    private String highWaterMark;
+    private LocalDateTime lastRunAt;
+
+    public ImportSyncState() {}
+
+    public ImportSyncState(String name) {
+        this.name = name;
+    }
+
+	public String getName() {return name;}
+	public void setName(String name) {this.name = name;}
+
+	public String getHighWaterMark() {return highWaterMark;}
+	public void setHighWaterMark(String highWaterMark) {this.highWaterMark = highWaterMark;}
+
+	public LocalDateTime getLastRunAt() {return lastRunAt;}
+	public void setLastRunAt(LocalDateTime lastRunAt) {this.lastRunAt = lastRunAt;}
+}
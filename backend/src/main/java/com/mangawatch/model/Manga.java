@@ -26,6 +26,10 @@ public class Manga {
 	    
 	    private String coverUrl;
 	    
+	    // importer fingerprint of the fields above, not exposed through the API
+	    @Column(name = "content_hash", length = 64)
+	    private String contentHash;
+	    
 	    @ElementCollection(fetch = FetchType.EAGER)
 	    @CollectionTable(name = "manga_alt_titles", joinColumns = @JoinColumn(name = "manga_id"))
 	    @Column(name = "alt_title", columnDefinition = "TEXT")  // <-- force Hibernate to match DB column
@@ -121,6 +125,14 @@ public class Manga {
 			this.coverUrl = coverUrl;
 		}
 
+		public String getContentHash() {
+			return contentHash;
+		}
+
+		public void setContentHash(String contentHash) {
+			this.contentHash = contentHash;
+		}
+
 		public List<String> getGenres() {
 			return genres;
 		}
@@ -0,0 +1,8 @@
+package com.mangawatch.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import com.mangawatch.model.ImportSyncState;
+
+public interface ImportSyncStateRepository extends JpaRepository<ImportSyncState, String> {
+}
@@ -0,0 +1,15 @@
+package com.mangawatch.repository;
+
+/**
+ * Where a keyset page starts: right after the row with this sort key and id.
+ *
+ * @param property   title, author or release_year
+ * @param afterKey   sort key of the last row already returned, as a string (null for a null key)
+ * @param afterId    id of that row, or null for the first page
+ */
+public record MangaKeyset(String property, boolean descending, String afterKey, Long afterId) {
+
+    public static MangaKeyset first(String property, boolean descending) {
+        return new MangaKeyset(property, descending, null, null);
+    }
+}
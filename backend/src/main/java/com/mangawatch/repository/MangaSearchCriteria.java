@@ -0,0 +1,54 @@
+package com.mangawatch.repository;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+
+/**
+ * What /api/manga filters on. Blank values mean "no filter"; use {@link #of} to normalize.
+ *
+ * @param query          substring of the title, an alt title or the author (case-insensitive);
+ *                       one or two chars match the start of a word
+ * @param status         exact status
+ * @param genres         manga with any of these genres, or all of them if allGenres
+ * @param allGenres      whether a manga needs every one of genres rather than one
+ * @param excludedGenres manga with none of these genres
+ */
+public record MangaSearchCriteria(String query, String status, List<String> genres, boolean allGenres,
+                                  List<String> excludedGenres) {
+
+    public static MangaSearchCriteria of(String query, String status, List<String> genres) {
+        return of(query, status, genres, false, null);
+    }
+
+    public static MangaSearchCriteria of(String query, String status, List<String> genres, boolean allGenres,
+                                         List<String> excludedGenres) {
+        List<String> included = distinct(genres);
+        return new MangaSearchCriteria(
+            query != null && !query.isBlank() ? query.trim() : null,
+            status != null && !status.isBlank() ? status.trim() : null,
+            included,
+            included != null && allGenres,
+            distinct(excludedGenres));
+    }
+
+    private static List<String> distinct(List<String> genres) {
+        return genres != null && !genres.isEmpty() ? List.copyOf(new LinkedHashSet<>(genres)) : null;
+    }
+
+    public boolean isEmpty() {
+        return query == null && status == null && genres == null && excludedGenres == null;
+    }
+
+    /**
+     * Equal for criteria that match the same manga: matching is case-insensitive and genre
+     * order doesn't matter, so the query is lowercased and genres sorted and de-duplicated
+     */
+    public String cacheKey() {
+        return (query != null ? query.toLowerCase(Locale.ROOT) : "")
+            + '\u0000' + (status != null ? status : "")
+            + '\u0000' + (genres != null ? (allGenres ? "all:" : "") + String.join("\u0001", new TreeSet<>(genres)) : "")
+            + '\u0000' + (excludedGenres != null ? String.join("\u0001", new TreeSet<>(excludedGenres)) : "");
+    }
+}
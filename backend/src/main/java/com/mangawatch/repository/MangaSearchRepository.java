@@ -0,0 +1,59 @@
+package com.mangawatch.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+
+/**
+ * Catalog search that Spring Data can't derive, mixed into {@link MangaRepository}.
+ */
+public interface MangaSearchRepository {
+
+    /**
+     * Sort property that orders by trigram similarity to the query, best match first
+     */
+    String SIMILARITY = "similarity";
+
+    /**
+     * Sort property that switches the query to full-text matching against search_document,
+     * ranked by ts_rank_cd, most relevant first
+     */
+    String RELEVANCE = "relevance";
+
+    /**
+     * Shortest query matched as a substring; shorter ones (a substring of one or two chars is in
+     * nearly everything) match the start of a word instead
+     */
+    int SUBSTRING_MIN_LENGTH = 3;
+
+    /**
+     * Ids of the manga matching the criteria, one page of them in sort order, and whether
+     * there's a next page. No count is run; see {@link #countMatches} and {@link #estimateMatches}.
+     *
+     * The pageable's sort uses column names (title, author, release_year), {@link #SIMILARITY}
+     * or {@link #RELEVANCE}; ties are broken by id so pages never overlap.
+     */
+    Slice<Long> searchIds(MangaSearchCriteria criteria, Pageable pageable);
+
+    /**
+     * Exact number of manga matching the criteria under the given sort (relevance matches
+     * words, everything else substrings)
+     */
+    long countMatches(MangaSearchCriteria criteria, Sort sort);
+
+    /**
+     * The planner's row estimate for the same query: no rows are read, and it can be far off
+     * for selective filters, so only worth showing for large results
+     */
+    long estimateMatches(MangaSearchCriteria criteria, Sort sort);
+
+    /**
+     * Up to limit ids of matching manga following the keyset position, in its order. Costs the
+     * same however deep the position is: no OFFSET, and no count.
+     *
+     * @throws IllegalArgumentException if the keyset's property isn't a column
+     */
+    List<Long> seekIds(MangaSearchCriteria criteria, MangaKeyset keyset, int limit);
+}
@@ -0,0 +1,238 @@
+package com.mangawatch.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.*;
+
+/**
+ * Search over manga, manga_alt_titles and manga_genres written so the trigram indexes from
+ * V16 can be used: each LIKE gets its own branch of a UNION (an OR across a LEFT JOIN
+ * forces a sequential scan), which also yields every manga id once and so needs no DISTINCT.
+ * Genres are an EXISTS on (manga_id, genre) instead of a join that multiplies rows: one for
+ * any-of, one per genre for all-of, NOT EXISTS for excluded genres.
+ * Pages never count; totals are a separate, optional query (exact or planner estimate).
+ *
+ * Matching and ordering are exactly what the in-memory index ({@code CatalogSnapshot}) does,
+ * since either may answer a given page: a query of one or two chars matches the start of a
+ * word rather than any substring, and text columns sort as lower(col) COLLATE "C", i.e. by
+ * code point of the lowercased value rather than by the database locale.
+ *
+ * Sorting by {@link #RELEVANCE} matches the query as words instead (websearch syntax: quotes,
+ * OR, -word) against the weighted search_document from V17, through its GIN index.
+ */
+class MangaSearchRepositoryImpl implements MangaSearchRepository {
+
+    // %1$s is the match operator: LIKE for substrings, ~ for the word-prefix regex of short queries
+    private static final String MATCHED_CTE =
+        "WITH matched AS (" +
+        "SELECT id AS manga_id FROM manga WHERE lower(title) %1$s lower(:pattern) " +
+        "UNION " +
+        "SELECT id FROM manga WHERE lower(author) %1$s lower(:pattern) " +
+        "UNION " +
+        "SELECT manga_id FROM manga_alt_titles WHERE lower(alt_title) %1$s lower(:pattern)) ";
+
+    // best of title, author and alt titles; only computed for rows that already matched
+    private static final String SIMILARITY_SQL =
+        "GREATEST(similarity(lower(m.title), lower(:query)), " +
+        "similarity(lower(m.author), lower(:query)), " +
+        "(SELECT max(similarity(lower(a.alt_title), lower(:query))) FROM manga_alt_titles a WHERE a.manga_id = m.id))";
+
+    private static final String RANK_SQL = "ts_rank_cd(m.search_document, q.query)";
+
+    // byte order of the lowercased text, which is what the index compares; see the V18 indexes
+    private static final Map<String, String> SORT_COLUMNS = Map.of(
+        "title", "lower(m.title) COLLATE \"C\"",
+        "author", "lower(m.author) COLLATE \"C\"",
+        "release_year", "m.release_year");
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    MangaSearchRepositoryImpl(NamedParameterJdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * The WITH clause (possibly empty) and FROM ... WHERE part shared by the data, count and seek queries
+     */
+    private record Filtered(String with, StringBuilder from, MapSqlParameterSource params) {}
+
+    private static Filtered filter(MangaSearchCriteria criteria, boolean fullText) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String with = "";
+        StringBuilder from = new StringBuilder("FROM manga m ");
+        if (fullText) {
+            from.append("CROSS JOIN websearch_to_tsquery('simple', :query) AS q(query) ");
+            params.addValue("query", criteria.query());
+        } else if (criteria.query() != null) {
+            boolean wordPrefix = criteria.query().length() < SUBSTRING_MIN_LENGTH;
+            with = String.format(MATCHED_CTE, wordPrefix ? "~" : "LIKE");
+            from.append("JOIN matched x ON x.manga_id = m.id ");
+            params.addValue("pattern", wordPrefix
+                ? "(^|[^[:alnum:]])" + escapeRegex(criteria.query())
+                : "%" + escapeLike(criteria.query()) + "%");
+            params.addValue("query", criteria.query());
+        }
+        from.append(fullText ? "WHERE m.search_document @@ q.query " : "WHERE true ");
+        if (criteria.status() != null) {
+            from.append("AND m.status = :status ");
+            params.addValue("status", criteria.status());
+        }
+        if (criteria.genres() != null && criteria.allGenres()) {
+            // one probe of (manga_id, genre) per genre rather than counting a manga's matches
+            for (int i = 0; i < criteria.genres().size(); i++) {
+                from.append("AND EXISTS (SELECT 1 FROM manga_genres g WHERE g.manga_id = m.id AND g.genre = :genre").append(i).append(") ");
+                params.addValue("genre" + i, criteria.genres().get(i));
+            }
+        } else if (criteria.genres() != null) {
+            from.append("AND EXISTS (SELECT 1 FROM manga_genres g WHERE g.manga_id = m.id AND g.genre IN (:genres)) ");
+            params.addValue("genres", criteria.genres());
+        }
+        if (criteria.excludedGenres() != null) {
+            from.append("AND NOT EXISTS (SELECT 1 FROM manga_genres g WHERE g.manga_id = m.id AND g.genre IN (:excludedGenres)) ");
+            params.addValue("excludedGenres", criteria.excludedGenres());
+        }
+        return new Filtered(with, from, params);
+    }
+
+    @Override
+    public Slice<Long> searchIds(MangaSearchCriteria criteria, Pageable pageable) {
+        boolean fullText = criteria.query() != null && sortsBy(pageable.getSort(), RELEVANCE);
+        Filtered filtered = filter(criteria, fullText);
+        MapSqlParameterSource params = filtered.params();
+
+        String select = filtered.with() + "SELECT m.id " + filtered.from() +
+            orderBy(pageable.getSort(), criteria.query() != null, fullText);
+        if (pageable.isUnpaged()) {
+            return new SliceImpl<>(jdbcTemplate.queryForList(select, params, Long.class), pageable, false);
+        }
+        // one row past the page says whether there's another
+        select += " LIMIT :limit OFFSET :offset";
+        params.addValue("limit", pageable.getPageSize() + 1);
+        params.addValue("offset", pageable.getOffset());
+
+        List<Long> ids = jdbcTemplate.queryForList(select, params, Long.class);
+        boolean hasNext = ids.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? ids.subList(0, pageable.getPageSize()) : ids, pageable, hasNext);
+    }
+
+    @Override
+    public long countMatches(MangaSearchCriteria criteria, Sort sort) {
+        Filtered filtered = filter(criteria, criteria.query() != null && sortsBy(sort, RELEVANCE));
+        Long total = jdbcTemplate.queryForObject(
+            filtered.with() + "SELECT count(*) " + filtered.from(), filtered.params(), Long.class);
+        return total != null ? total : 0;
+    }
+
+    @Override
+    public long estimateMatches(MangaSearchCriteria criteria, Sort sort) {
+        Filtered filtered = filter(criteria, criteria.query() != null && sortsBy(sort, RELEVANCE));
+        String plan = jdbcTemplate.queryForObject(
+            "EXPLAIN (FORMAT JSON) " + filtered.with() + "SELECT m.id " + filtered.from(), filtered.params(), String.class);
+        try {
+            return Math.max(0, objectMapper.readTree(plan).path(0).path("Plan").path("Plan Rows").asLong());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable plan for " + criteria, e);
+        }
+    }
+
+    /**
+     * Row-value comparison against the (column, id) indexes from V18. Nullable columns sort
+     * NULLS LAST ascending and NULLS FIRST descending (Postgres' defaults, which the indexes
+     * follow), so the null tail needs its own condition.
+     */
+    @Override
+    public List<Long> seekIds(MangaSearchCriteria criteria, MangaKeyset keyset, int limit) {
+        String column = SORT_COLUMNS.get(keyset.property());
+        if (column == null) {
+            throw new IllegalArgumentException("Can't seek on " + keyset.property());
+        }
+        Filtered filtered = filter(criteria, false);
+        MapSqlParameterSource params = filtered.params();
+        StringBuilder sql = new StringBuilder(filtered.with()).append("SELECT m.id ").append(filtered.from());
+
+        if (keyset.afterId() != null) {
+            boolean nullable = !"title".equals(keyset.property());
+            boolean text = !"release_year".equals(keyset.property());
+            String after = keyset.descending() ? "<" : ">";
+            if (keyset.afterKey() != null) {
+                sql.append("AND ((").append(column).append(", m.id) ").append(after)
+                    .append(text ? " (lower(:key), :id)" : " (:key, :id)");
+                if (nullable && !keyset.descending()) {
+                    sql.append(" OR ").append(column).append(" IS NULL");
+                }
+                sql.append(") ");
+                params.addValue("key", text ? keyset.afterKey() : (Object) Integer.valueOf(keyset.afterKey()));
+            } else if (keyset.descending()) {
+                sql.append("AND (").append(column).append(" IS NOT NULL OR m.id < :id) ");
+            } else {
+                sql.append("AND ").append(column).append(" IS NULL AND m.id > :id ");
+            }
+            params.addValue("id", keyset.afterId());
+        }
+
+        Sort.Direction direction = keyset.descending() ? Sort.Direction.DESC : Sort.Direction.ASC;
+        sql.append(orderBy(Sort.by(direction, keyset.property()), false, false)).append(" LIMIT :limit");
+        params.addValue("limit", limit);
+        return jdbcTemplate.queryForList(sql.toString(), params, Long.class);
+    }
+
+    private static boolean sortsBy(Sort sort, String property) {
+        return sort.stream().anyMatch(order -> property.equals(order.getProperty()));
+    }
+
+    private static String orderBy(Sort sort, boolean hasQuery, boolean fullText) {
+        List<String> terms = new ArrayList<>();
+        Sort.Direction tieBreak = null;
+        for (Sort.Order order : sort) {
+            String term;
+            if (SIMILARITY.equals(order.getProperty())) {
+                // best match first regardless of direction; without a query there's nothing to compare
+                term = hasQuery && !fullText ? SIMILARITY_SQL + " DESC" : null;
+            } else if (RELEVANCE.equals(order.getProperty())) {
+                term = fullText ? RANK_SQL + " DESC" : null;
+            } else {
+                String column = SORT_COLUMNS.get(order.getProperty());
+                term = column != null ? column + (order.isDescending() ? " DESC" : " ASC") : null;
+            }
+            if (term != null) {
+                terms.add(term);
+                if (tieBreak == null) {
+                    // scores ignore the direction, and so do their ties
+                    tieBreak = SORT_COLUMNS.containsKey(order.getProperty()) ? order.getDirection() : Sort.Direction.ASC;
+                }
+            }
+        }
+        if (terms.isEmpty()) {
+            terms.add(SORT_COLUMNS.get("title") + " ASC");
+        }
+        terms.add(tieBreak == Sort.Direction.DESC ? "m.id DESC" : "m.id ASC");
+        return "ORDER BY " + String.join(", ", terms);
+    }
+
+    // user input is matched literally; backslash is Postgres' default LIKE escape
+    static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    // likewise for a regex: every char that isn't a letter or digit is escaped (\ before one of those is always literal)
+    static String escapeRegex(String value) {
+        StringBuilder out = new StringBuilder(value.length() * 2);
+        value.codePoints().forEach(c -> {
+            if (!Character.isLetterOrDigit(c)) {
+                out.append('\\');
+            }
+            out.appendCodePoint(c);
+        });
+        return out.toString();
+    }
+}
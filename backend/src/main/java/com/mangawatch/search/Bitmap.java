@@ -0,0 +1,329 @@
+package com.mangawatch.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compressed set of document numbers, laid out like a Roaring bitmap: the number space is cut
+ * into chunks of 65536, and each non-empty chunk holds its members either as a sorted char array
+ * (up to 4096 of them, two bytes each) or as a 1024-word bitset (8 KB however full it is).
+ * A genre on a few hundred titles costs a few hundred bytes; one on half the catalog a dense
+ * bitset that intersects 64 documents per instruction.
+ *
+ * Immutable; {@link #and}, {@link #or}, {@link #andNot}, {@link #add} and {@link #remove} return
+ * new bitmaps, which share every chunk the operation left as it was.
+ */
+final class Bitmap {
+
+    static final Bitmap EMPTY = new Bitmap(new char[0], new Object[0]);
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int WORDS = 1 << 10;
+
+    private enum Op { AND, OR, AND_NOT }
+
+    // chunk numbers (the high 16 bits) in ascending order, and per chunk either a char[] of
+    // the low 16 bits in ascending order or a long[WORDS] bitset
+    private final char[] keys;
+    private final Object[] chunks;
+    private final int cardinality;
+
+    private Bitmap(char[] keys, Object[] chunks) {
+        this.keys = keys;
+        this.chunks = chunks;
+        int count = 0;
+        for (Object chunk : chunks) {
+            count += cardinality(chunk);
+        }
+        this.cardinality = count;
+    }
+
+    /**
+     * The bitmap of the given document numbers, which must be ascending and distinct
+     */
+    static Bitmap of(int[] docs) {
+        List<Character> keys = new ArrayList<>();
+        List<Object> chunks = new ArrayList<>();
+        for (int i = 0; i < docs.length; ) {
+            int key = docs[i] >>> 16;
+            int end = i;
+            while (end < docs.length && docs[end] >>> 16 == key) {
+                end++;
+            }
+            char[] values = new char[end - i];
+            for (int j = i; j < end; j++) {
+                values[j - i] = (char) docs[j];
+            }
+            keys.add((char) key);
+            chunks.add(values.length > ARRAY_MAX ? toWords(values) : values);
+            i = end;
+        }
+        return of(keys, chunks);
+    }
+
+    /**
+     * Documents 0 to size - 1
+     */
+    static Bitmap range(int size) {
+        List<Character> keys = new ArrayList<>();
+        List<Object> chunks = new ArrayList<>();
+        for (int from = 0; from < size; from += 1 << 16) {
+            int count = Math.min(size - from, 1 << 16);
+            Object chunk;
+            if (count <= ARRAY_MAX) {
+                char[] values = new char[count];
+                for (int low = 0; low < count; low++) {
+                    values[low] = (char) low;
+                }
+                chunk = values;
+            } else {
+                long[] words = new long[WORDS];
+                Arrays.fill(words, 0, count >>> 6, -1L);
+                if ((count & 63) != 0) {
+                    words[count >>> 6] = (1L << count) - 1;
+                }
+                chunk = words;
+            }
+            keys.add((char) (from >>> 16));
+            chunks.add(chunk);
+        }
+        return of(keys, chunks);
+    }
+
+    private static Bitmap of(List<Character> keys, List<Object> chunks) {
+        if (keys.isEmpty()) {
+            return EMPTY;
+        }
+        char[] keyArray = new char[keys.size()];
+        for (int i = 0; i < keyArray.length; i++) {
+            keyArray[i] = keys.get(i);
+        }
+        return new Bitmap(keyArray, chunks.toArray());
+    }
+
+    int cardinality() {
+        return cardinality;
+    }
+
+    boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    /**
+     * Approximate heap use of the chunks
+     */
+    long sizeInBytes() {
+        long bytes = keys.length * 2L;
+        for (Object chunk : chunks) {
+            bytes += chunk instanceof long[] words ? words.length * 8L : ((char[]) chunk).length * 2L;
+        }
+        return bytes;
+    }
+
+    /**
+     * The members in ascending order
+     */
+    int[] toArray() {
+        int[] docs = new int[cardinality];
+        int n = 0;
+        for (int c = 0; c < keys.length; c++) {
+            int high = keys[c] << 16;
+            if (chunks[c] instanceof long[] words) {
+                for (int w = 0; w < WORDS; w++) {
+                    for (long word = words[w]; word != 0; word &= word - 1) {
+                        docs[n++] = high | (w << 6) | Long.numberOfTrailingZeros(word);
+                    }
+                }
+            } else {
+                for (char low : (char[]) chunks[c]) {
+                    docs[n++] = high | low;
+                }
+            }
+        }
+        return docs;
+    }
+
+    Bitmap and(Bitmap other) {
+        return combine(other, Op.AND);
+    }
+
+    Bitmap or(Bitmap other) {
+        return combine(other, Op.OR);
+    }
+
+    Bitmap andNot(Bitmap other) {
+        return combine(other, Op.AND_NOT);
+    }
+
+    /**
+     * This bitmap plus the given documents, in any order; only the chunks they fall in are copied
+     */
+    Bitmap add(int... docs) {
+        return docs.length == 0 ? this : combine(of(sortedDistinct(docs)), Op.OR);
+    }
+
+    /**
+     * This bitmap less the given documents, in any order; only the chunks they fall in are copied
+     */
+    Bitmap remove(int... docs) {
+        return docs.length == 0 || isEmpty() ? this : combine(of(sortedDistinct(docs)), Op.AND_NOT);
+    }
+
+    private static int[] sortedDistinct(int[] docs) {
+        int[] sorted = docs.clone();
+        Arrays.sort(sorted);
+        int n = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (n == 0 || sorted[i] != sorted[n - 1]) {
+                sorted[n++] = sorted[i];
+            }
+        }
+        return n == sorted.length ? sorted : Arrays.copyOf(sorted, n);
+    }
+
+    // merge the two key lists; a chunk only one side has is kept or dropped depending on op
+    private Bitmap combine(Bitmap other, Op op) {
+        List<Character> outKeys = new ArrayList<>();
+        List<Object> outChunks = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < keys.length || j < other.keys.length) {
+            int a = i < keys.length ? keys[i] : Integer.MAX_VALUE;
+            int b = j < other.keys.length ? other.keys[j] : Integer.MAX_VALUE;
+            Object chunk = null;
+            if (a == b) {
+                chunk = combine(chunks[i++], other.chunks[j++], op);
+            } else if (a < b) {
+                chunk = op != Op.AND ? chunks[i] : null;
+                i++;
+            } else {
+                chunk = op == Op.OR ? other.chunks[j] : null;
+                j++;
+            }
+            if (chunk != null) {
+                outKeys.add((char) Math.min(a, b));
+                outChunks.add(chunk);
+            }
+        }
+        return of(outKeys, outChunks);
+    }
+
+    /**
+     * One chunk of the result, or null if it came out empty
+     */
+    private static Object combine(Object a, Object b, Op op) {
+        if (a instanceof char[] left && b instanceof char[] right) {
+            return normalize(merge(left, right, op));
+        }
+        // a sparse side against a bitset: test each of its members
+        if (a instanceof char[] left && op != Op.OR) {
+            return normalize(filter(left, (long[]) b, op == Op.AND));
+        }
+        if (b instanceof char[] right && op == Op.AND) {
+            return normalize(filter(right, (long[]) a, true));
+        }
+        long[] left = a instanceof long[] words ? words : toWords((char[]) a);
+        long[] right = b instanceof long[] words ? words : toWords((char[]) b);
+        long[] out = new long[WORDS];
+        for (int w = 0; w < WORDS; w++) {
+            out[w] = switch (op) {
+                case AND -> left[w] & right[w];
+                case OR -> left[w] | right[w];
+                case AND_NOT -> left[w] & ~right[w];
+            };
+        }
+        return normalize(out);
+    }
+
+    private static char[] merge(char[] a, char[] b, Op op) {
+        char[] out = new char[op == Op.OR ? a.length + b.length : a.length];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                if (op != Op.AND_NOT) {
+                    out[n++] = a[i];
+                }
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                if (op != Op.AND) {
+                    out[n++] = a[i];
+                }
+                i++;
+            } else {
+                if (op == Op.OR) {
+                    out[n++] = b[j];
+                }
+                j++;
+            }
+        }
+        if (op != Op.AND) {
+            while (i < a.length) {
+                out[n++] = a[i++];
+            }
+        }
+        if (op == Op.OR) {
+            while (j < b.length) {
+                out[n++] = b[j++];
+            }
+        }
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    // the values that are (keep) or aren't (!keep) in the bitset
+    private static char[] filter(char[] values, long[] words, boolean keep) {
+        char[] out = new char[values.length];
+        int n = 0;
+        for (char value : values) {
+            if (((words[value >>> 6] & (1L << value)) != 0) == keep) {
+                out[n++] = value;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    // each chunk in its smaller form: an array up to ARRAY_MAX members, a bitset beyond
+    private static Object normalize(Object chunk) {
+        int count = cardinality(chunk);
+        if (count == 0) {
+            return null;
+        }
+        if (chunk instanceof char[] values) {
+            return count > ARRAY_MAX ? toWords(values) : values;
+        }
+        long[] words = (long[]) chunk;
+        if (count > ARRAY_MAX) {
+            return words;
+        }
+        char[] values = new char[count];
+        int n = 0;
+        for (int w = 0; w < WORDS; w++) {
+            for (long word = words[w]; word != 0; word &= word - 1) {
+                values[n++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+            }
+        }
+        return values;
+    }
+
+    private static long[] toWords(char[] values) {
+        long[] words = new long[WORDS];
+        for (char value : values) {
+            words[value >>> 6] |= 1L << value;
+        }
+        return words;
+    }
+
+    private static int cardinality(Object chunk) {
+        if (chunk instanceof char[] values) {
+            return values.length;
+        }
+        int count = 0;
+        for (long word : (long[]) chunk) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+}
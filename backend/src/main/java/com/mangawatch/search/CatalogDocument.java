@@ -0,0 +1,9 @@
+package com.mangawatch.search;
+
+import java.util.List;
+
+/**
+ * The fields of one manga the search index needs; descriptions and covers stay in the database.
+ */
+record CatalogDocument(long id, String title, String author, Integer year, String status,
+                       List<String> altTitles, List<String> genres) {}
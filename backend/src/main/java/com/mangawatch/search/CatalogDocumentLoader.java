@@ -0,0 +1,85 @@
+package com.mangawatch.search;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Reads {@link CatalogDocument}s for the search index, one row per manga with its
+ * collections folded into arrays.
+ */
+@Component
+class CatalogDocumentLoader {
+
+    private static final String SELECT_SQL =
+        "SELECT m.id, m.title, m.author, m.release_year, m.status, " +
+        "ARRAY(SELECT a.alt_title FROM manga_alt_titles a WHERE a.manga_id = m.id) AS alt_titles, " +
+        "ARRAY(SELECT g.genre FROM manga_genres g WHERE g.manga_id = m.id) AS genres " +
+        "FROM manga m ";
+
+    private static final int SCAN_FETCH_SIZE = 5_000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    CatalogDocumentLoader(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Stream every manga; the fetch size only makes the driver stream inside a transaction
+     */
+    @Transactional(readOnly = true)
+    public void loadAll(Consumer<CatalogDocument> sink) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(SELECT_SQL);
+            ps.setFetchSize(SCAN_FETCH_SIZE);
+            return ps;
+        }, rs -> {
+            sink.accept(map(rs));
+        });
+    }
+
+    /**
+     * The given manga; ids that no longer exist are simply missing from the result
+     */
+    public List<CatalogDocument> load(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(SELECT_SQL + "WHERE m.id = ANY(?::bigint[])",
+            ps -> ps.setArray(1, ps.getConnection().createArrayOf("int8", ids.toArray())),
+            (rs, rowNum) -> map(rs));
+    }
+
+    private static CatalogDocument map(ResultSet rs) throws SQLException {
+        return new CatalogDocument(
+            rs.getLong("id"),
+            rs.getString("title"),
+            rs.getString("author"),
+            rs.getObject("release_year", Integer.class),
+            rs.getString("status"),
+            strings(rs.getArray("alt_titles")),
+            strings(rs.getArray("genres")));
+    }
+
+    private static List<String> strings(Array array) throws SQLException {
+        if (array == null) {
+            return List.of();
+        }
+        Object[] values = (Object[]) array.getArray();
+        List<String> strings = new ArrayList<>(values.length);
+        for (Object value : values) {
+            if (value != null) {
+                strings.add(value.toString());
+            }
+        }
+        return strings;
+    }
+}
@@ -0,0 +1,213 @@
+package com.mangawatch.search;
+
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.mangawatch.importer.MangaCatalogChangedEvent;
+import com.mangawatch.repository.MangaKeyset;
+import com.mangawatch.repository.MangaSearchCriteria;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * In-process search over the whole catalog, so /api/manga only goes to the database to load
+ * the page it returns. See {@link CatalogSnapshot} for what's indexed and how it matches.
+ *
+ * Built from one scan of the manga tables once the application is up; until then (or if
+ * search.index.enabled is off) {@link #search} declines and callers use SQL. Afterwards,
+ * every committed import batch queues its manga ids; a background thread reloads just those
+ * rows, at most once per search.index.refresh-delay-ms, and swaps in a {@link CatalogView}
+ * whose delta holds every manga changed since the last full build. Only that delta is
+ * rebuilt per refresh; once it passes search.index.merge-threshold manga, the next refresh
+ * folds it into a new full snapshot. Searches see the previous view until the swap.
+ */
+@Component
+public class CatalogSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogSearchIndex.class);
+
+    private final CatalogDocumentLoader loader;
+    private final boolean enabled;
+    private final long refreshDelayMs;
+    private final int mergeThreshold;
+
+    // only touched by the refresh thread: the whole catalog, and the ids changed since the last full build
+    private final Map<Long, CatalogDocument> documents = new HashMap<>();
+    private final Set<Long> changed = new HashSet<>();
+
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService refresher;
+
+    // null until the first build finishes
+    private volatile CatalogView view;
+    // bumped with every view swap
+    private volatile long generation;
+
+    public CatalogSearchIndex(
+            CatalogDocumentLoader loader,
+            @Value("${search.index.enabled:true}") boolean enabled,
+            @Value("${search.index.refresh-delay-ms:5000}") long refreshDelayMs,
+            @Value("${search.index.merge-threshold:10000}") int mergeThreshold) {
+        this.loader = loader;
+        this.enabled = enabled;
+        this.refreshDelayMs = Math.max(0, refreshDelayMs);
+        this.mergeThreshold = mergeThreshold;
+        this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "search-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public boolean isReady() {
+        return view != null;
+    }
+
+    /**
+     * Changes whenever searches start seeing a new view (or the first one)
+     */
+    public long generation() {
+        return generation;
+    }
+
+    public int size() {
+        CatalogView current = view;
+        return current != null ? current.size() : 0;
+    }
+
+    /**
+     * Answer a search from memory.
+     *
+     * @param pageable sorted by one of the column names {@link com.mangawatch.repository.MangaSearchRepository#searchIds}
+     *                 takes; relevance isn't supported here
+     * @return the page of ids, or empty if the index isn't ready or can't handle the sort
+     */
+    public Optional<Page<Long>> search(MangaSearchCriteria criteria, Pageable pageable) {
+        CatalogView current = view;
+        if (current == null) {
+            return Optional.empty();
+        }
+        Sort.Order order = pageable.getSort().stream().findFirst().orElse(Sort.Order.asc("title"));
+        if (!CatalogSnapshot.supportsSort(order.getProperty())) {
+            return Optional.empty();
+        }
+        return Optional.of(current.search(criteria, order.getProperty(), order.isDescending(), pageable));
+    }
+
+    /**
+     * Keyset page from memory; see {@link com.mangawatch.repository.MangaSearchRepository#seekIds}
+     *
+     * @return the ids, or empty if the index isn't ready
+     */
+    public Optional<List<Long>> seek(MangaSearchCriteria criteria, MangaKeyset keyset, int limit) {
+        CatalogView current = view;
+        if (current == null) {
+            return Optional.empty();
+        }
+        return Optional.of(current.seek(criteria, keyset, limit));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (enabled) {
+            refresher.execute(this::rebuild);
+        }
+    }
+
+    /**
+     * Queue the written manga for reloading; runs only after the batch committed
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(MangaCatalogChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        pending.addAll(event.mangaIds());
+        if (isReady() && refreshScheduled.compareAndSet(false, true)) {
+            refresher.schedule(this::refresh, refreshDelayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void rebuild() {
+        long start = System.nanoTime();
+        try {
+            documents.clear();
+            loader.loadAll(doc -> documents.put(doc.id(), doc));
+            changed.clear();
+            publish(CatalogView.of(CatalogSnapshot.build(documents.values())), start);
+        } catch (RuntimeException e) {
+            log.error("Couldn't build the search index; searches go to the database", e);
+            return;
+        }
+        // changes committed while the scan ran may have been missed
+        if (!pending.isEmpty() && refreshScheduled.compareAndSet(false, true)) {
+            refresher.execute(this::refresh);
+        }
+    }
+
+    private void refresh() {
+        refreshScheduled.set(false);
+        List<Long> ids = new ArrayList<>(pending);
+        pending.removeAll(ids);
+        if (ids.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            ids.forEach(documents::remove);
+            loader.load(ids).forEach(doc -> documents.put(doc.id(), doc));
+            changed.addAll(ids);
+            if (changed.size() > mergeThreshold) {
+                CatalogSnapshot merged = CatalogSnapshot.rebuild(documents.values(), view.base(), changed);
+                changed.clear();
+                publish(CatalogView.of(merged), start);
+            } else {
+                List<CatalogDocument> current = new ArrayList<>(changed.size());
+                for (Long id : changed) {
+                    CatalogDocument doc = documents.get(id);
+                    if (doc != null) {
+                        current.add(doc);
+                    }
+                }
+                publish(view.withChanges(ids, current), start);
+            }
+        } catch (RuntimeException e) {
+            // try these again with the next batch rather than leaving them stale
+            pending.addAll(ids);
+            log.warn("Search index refresh of {} manga failed", ids.size(), e);
+        }
+    }
+
+    private void publish(CatalogView fresh, long startNanos) {
+        boolean merged = fresh.base() != (view != null ? view.base() : null);
+        view = fresh;
+        generation++;
+        long millis = (System.nanoTime() - startNanos) / 1_000_000;
+        if (merged) {
+            CatalogSnapshot base = fresh.base();
+            log.info("Search index: {} manga, {} trigrams, {} postings, {} KB of filter bitmaps, built in {} ms",
+                base.size(), base.trigramCount(), base.postingCount(), base.filterBytes() / 1024, millis);
+        } else {
+            log.debug("Search index: {} manga changed since the last full build, delta built in {} ms",
+                fresh.deltaSize(), millis);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        refresher.shutdownNow();
+    }
+}
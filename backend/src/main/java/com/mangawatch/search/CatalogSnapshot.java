@@ -0,0 +1,846 @@
+package com.mangawatch.search;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import com.mangawatch.repository.MangaKeyset;
+import com.mangawatch.repository.MangaSearchCriteria;
+import com.mangawatch.repository.MangaSearchRepository;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * An immutable, searchable copy of the catalog, or of the part of it changed since the last
+ * full build. Readers use it without locking; {@link CatalogView} layers the two.
+ *
+ * Documents are numbered 0..n-1 in id order. Per document it keeps:
+ * - the normalized searchable text (title, author and alt titles joined by a separator)
+ * - status and genres dictionary-encoded, with a compressed {@link Bitmap} of the documents
+ *   per status and per genre, so filters are set operations over them
+ * - its position in title, author and year order, which serves both offset pages and
+ *   keyset seeks
+ * Postings are in CSR layout (one offsets array, one int array of document numbers):
+ * - every trigram of the searchable text, for substring queries of three chars or more
+ * - every word, kept in sorted order, for shorter queries (matched as a word prefix)
+ *
+ * Results are the same ids in the same order as {@link MangaSearchRepository}'s, which answers
+ * whatever the index can't: a query matches as a case-insensitive substring of the title,
+ * author or an alt title, except that one or two chars only match at the start of a word;
+ * status must be equal, any listed genre is enough (every one with allGenres), and a manga
+ * with an excluded genre is left out. Titles and authors sort lowercased, by code point
+ * (lower(col) COLLATE "C"), years numerically, nulls last, ties by id.
+ */
+final class CatalogSnapshot {
+
+    // below this share of the catalog, matches are sorted by rank instead of walking the sort order
+    private static final int WALK_ORDER_DIVISOR = 8;
+
+    private final int size;
+    private final long[] ids;
+    private final String[] texts;
+
+    private final Map<String, Integer> statusCodes;
+    private final Bitmap[] statusDocs;
+    private final Map<String, Integer> genreCodes;
+    private final Bitmap[] genreDocs;
+    private final Bitmap allDocs;
+
+    private final TrigramTerms trigramTerms;
+    private final int[] trigramStart;
+    private final int[] trigramDocs;
+
+    private final String[] tokens;
+    private final int[] tokenStart;
+    private final int[] tokenDocs;
+
+    private final Ordering byTitle;
+    private final Ordering byAuthor;
+    private final Ordering byYear;
+
+    private CatalogSnapshot(Builder b) {
+        this.size = b.size;
+        this.ids = b.ids;
+        this.texts = b.texts;
+        this.statusCodes = b.statusCodes;
+        this.statusDocs = b.statusDocs;
+        this.genreCodes = b.genreCodes;
+        this.genreDocs = b.genreDocs;
+        this.allDocs = Bitmap.range(b.size);
+        this.trigramTerms = b.trigramTerms;
+        this.trigramStart = b.trigramStart;
+        this.trigramDocs = b.trigramDocs;
+        this.tokens = b.tokens;
+        this.tokenStart = b.tokenStart;
+        this.tokenDocs = b.tokenDocs;
+        this.byTitle = b.byTitle;
+        this.byAuthor = b.byAuthor;
+        this.byYear = b.byYear;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long id(int doc) {
+        return ids[doc];
+    }
+
+    /**
+     * The document number of a manga, or -1 if it isn't in this snapshot
+     */
+    int doc(long id) {
+        int at = Arrays.binarySearch(ids, id);
+        return at >= 0 ? at : -1;
+    }
+
+    int trigramCount() {
+        return trigramStart.length - 1;
+    }
+
+    long postingCount() {
+        return (long) trigramDocs.length + tokenDocs.length;
+    }
+
+    long filterBytes() {
+        long bytes = 0;
+        for (Bitmap docs : statusDocs) {
+            bytes += docs.sizeInBytes();
+        }
+        for (Bitmap docs : genreDocs) {
+            bytes += docs.sizeInBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Whether {@link #search} can order by this sort property
+     */
+    static boolean supportsSort(String property) {
+        return switch (property) {
+            case "title", "author", "release_year", MangaSearchRepository.SIMILARITY -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * One page of matching manga ids, ordered by the given property (see {@link #supportsSort})
+     * with ties broken by id in the same direction, like {@link MangaSearchRepository#searchIds}.
+     */
+    Page<Long> search(MangaSearchCriteria criteria, String sortProperty, boolean descending, Pageable pageable) {
+        int[] hits = match(criteria, null);
+        int total = hits.length;
+        int from = pageable.isPaged() ? (int) Math.min(pageable.getOffset(), total) : 0;
+        int to = pageable.isPaged() ? (int) Math.min((long) from + pageable.getPageSize(), total) : total;
+        return new PageImpl<>(idsOf(sorted(hits, criteria, sortProperty, descending, from, to).docs()), pageable, total);
+    }
+
+    /**
+     * Documents in result order and, when ordered by similarity, their scores
+     */
+    record Hits(int total, int[] docs, double[] scores) {}
+
+    /**
+     * The first limit matching documents in {@link #search} order, and how many match in all
+     *
+     * @param removed documents to leave out, or null
+     */
+    Hits top(MangaSearchCriteria criteria, Bitmap removed, String sortProperty, boolean descending, int limit) {
+        int[] hits = match(criteria, removed);
+        return sorted(hits, criteria, sortProperty, descending, 0, Math.min(limit, hits.length));
+    }
+
+    private Hits sorted(int[] hits, MangaSearchCriteria criteria, String sortProperty, boolean descending, int from, int to) {
+        if (MangaSearchRepository.SIMILARITY.equals(sortProperty)) {
+            // without a query there's nothing to be similar to, and the SQL falls back to title ascending
+            return criteria.query() != null
+                ? bySimilarity(hits, Text.normalize(criteria.query()), from, to)
+                : new Hits(hits.length, inOrder(hits, byTitle, false, from, to), null);
+        }
+        return new Hits(hits.length, inOrder(hits, ordering(sortProperty), descending, from, to), null);
+    }
+
+    /**
+     * The document's key in the given sort order, comparable with {@link #compareKeys}
+     */
+    Object sortKey(String property, int doc) {
+        return ordering(property).keys[doc];
+    }
+
+    /**
+     * Sort keys in ascending order: code point order for text, nulls last
+     */
+    static int compareKeys(Object a, Object b) {
+        return Ordering.KEY_ORDER.compare(a, b);
+    }
+
+    /**
+     * Up to limit matching manga ids that follow the keyset position, like
+     * {@link MangaSearchRepository#seekIds}. The position is located by key and id, so a cursor
+     * stays usable across snapshots even if its row changed or went away.
+     */
+    List<Long> seek(MangaSearchCriteria criteria, MangaKeyset keyset, int limit) {
+        return idsOf(seekDocs(criteria, null, keyset, limit));
+    }
+
+    /**
+     * The documents {@link #seek} returns the ids of
+     *
+     * @param removed documents to leave out, or null
+     */
+    int[] seekDocs(MangaSearchCriteria criteria, Bitmap removed, MangaKeyset keyset, int limit) {
+        Ordering ordering = ordering(keyset.property());
+        int[] hits = match(criteria, removed);
+        // positions in ascending order: [0, before) sort before the cursor, [after, size) after it
+        int before = 0;
+        int after = 0;
+        if (keyset.afterId() != null) {
+            Object key = ordering.key(keyset.afterKey());
+            before = ordering.boundary(key, keyset.afterId(), ids, false);
+            after = ordering.boundary(key, keyset.afterId(), ids, true);
+        } else if (keyset.descending()) {
+            before = size;
+        }
+
+        // the walk / sort split mirrors inOrder
+        int[] page = new int[Math.min(limit, hits.length)];
+        int n = 0;
+        if ((long) hits.length * WALK_ORDER_DIVISOR >= size) {
+            BitSet matched = new BitSet(size);
+            for (int doc : hits) {
+                matched.set(doc);
+            }
+            if (keyset.descending()) {
+                for (int p = before - 1; p >= 0 && n < page.length; p--) {
+                    if (matched.get(ordering.order[p])) {
+                        page[n++] = ordering.order[p];
+                    }
+                }
+            } else {
+                for (int p = after; p < size && n < page.length; p++) {
+                    if (matched.get(ordering.order[p])) {
+                        page[n++] = ordering.order[p];
+                    }
+                }
+            }
+        } else {
+            int[] positions = ordering.positions(hits);
+            if (keyset.descending()) {
+                int end = lowerBound(positions, before);
+                for (int i = end - 1; i >= 0 && n < page.length; i--) {
+                    page[n++] = ordering.order[positions[i]];
+                }
+            } else {
+                for (int i = lowerBound(positions, after); i < positions.length && n < page.length; i++) {
+                    page[n++] = ordering.order[positions[i]];
+                }
+            }
+        }
+        return Arrays.copyOf(page, n);
+    }
+
+    private Ordering ordering(String property) {
+        return switch (property) {
+            case "author" -> byAuthor;
+            case "release_year" -> byYear;
+            default -> byTitle;
+        };
+    }
+
+    private List<Long> idsOf(int[] docs) {
+        List<Long> content = new ArrayList<>(docs.length);
+        for (int doc : docs) {
+            content.add(ids[doc]);
+        }
+        return content;
+    }
+
+    // first index whose value is >= target, in a sorted array
+    private static int lowerBound(int[] sorted, int target) {
+        int at = Arrays.binarySearch(sorted, target);
+        return at >= 0 ? at : -at - 1;
+    }
+
+    /**
+     * Matching documents in document order, less the removed ones (if any)
+     */
+    private int[] match(MangaSearchCriteria criteria, Bitmap removed) {
+        Bitmap filter = filter(criteria);
+        if (removed != null && !removed.isEmpty()) {
+            filter = (filter != null ? filter : allDocs).andNot(removed);
+        }
+        if (criteria.query() == null) {
+            return (filter != null ? filter : allDocs).toArray();
+        }
+        if (filter != null && filter.isEmpty()) {
+            return new int[0];
+        }
+        int[] candidates = queryMatches(Text.normalize(criteria.query()));
+        return filter != null ? filter.and(Bitmap.of(candidates)).toArray() : candidates;
+    }
+
+    /**
+     * The documents passing the status and genre filters, or null when there are none
+     */
+    private Bitmap filter(MangaSearchCriteria criteria) {
+        Bitmap filter = null;
+        if (criteria.status() != null) {
+            Integer code = statusCodes.get(criteria.status());
+            filter = code != null ? statusDocs[code] : Bitmap.EMPTY;
+        }
+        if (criteria.genres() != null) {
+            Bitmap genres = criteria.allGenres() ? allOf(criteria.genres()) : anyOf(criteria.genres());
+            filter = filter != null ? filter.and(genres) : genres;
+        }
+        if (criteria.excludedGenres() != null) {
+            Bitmap excluded = anyOf(criteria.excludedGenres());
+            if (!excluded.isEmpty()) {
+                filter = (filter != null ? filter : allDocs).andNot(excluded);
+            }
+        }
+        return filter;
+    }
+
+    private Bitmap anyOf(List<String> names) {
+        Bitmap docs = Bitmap.EMPTY;
+        for (String name : names) {
+            Integer code = genreCodes.get(name);
+            if (code != null) {
+                docs = docs.or(genreDocs[code]);
+            }
+        }
+        return docs;
+    }
+
+    private Bitmap allOf(List<String> names) {
+        List<Bitmap> sets = new ArrayList<>(names.size());
+        for (String name : names) {
+            Integer code = genreCodes.get(name);
+            if (code == null) {
+                return Bitmap.EMPTY;
+            }
+            sets.add(genreDocs[code]);
+        }
+        // smallest first, so every intersection after it is cheap
+        sets.sort(Comparator.comparingInt(Bitmap::cardinality));
+        Bitmap docs = sets.get(0);
+        for (int i = 1; i < sets.size() && !docs.isEmpty(); i++) {
+            docs = docs.and(sets.get(i));
+        }
+        return docs;
+    }
+
+    private int[] queryMatches(String query) {
+        if (query.indexOf(Text.FIELD_SEPARATOR) >= 0) {
+            // no single field contains it
+            return new int[0];
+        }
+        if (query.length() < MangaSearchRepository.SUBSTRING_MIN_LENGTH) {
+            return isWord(query) ? tokenPrefixMatches(query) : wordStartMatches(query);
+        }
+        long[] trigrams = Text.substringTrigrams(query);
+        int[] terms = new int[trigrams.length];
+        for (int i = 0; i < trigrams.length; i++) {
+            terms[i] = trigramTerms.get(trigrams[i]);
+            if (terms[i] < 0) {
+                return new int[0];
+            }
+        }
+        // intersect from the rarest trigram up, then confirm the actual substring
+        Integer[] byLength = new Integer[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            byLength[i] = terms[i];
+        }
+        Arrays.sort(byLength, Comparator.comparingInt(term -> trigramStart[term + 1] - trigramStart[term]));
+        int first = byLength[0];
+        int[] candidates = Arrays.copyOfRange(trigramDocs, trigramStart[first], trigramStart[first + 1]);
+        int n = candidates.length;
+        for (int i = 1; i < byLength.length && n > 0; i++) {
+            n = intersect(candidates, n, trigramDocs, trigramStart[byLength[i]], trigramStart[byLength[i] + 1]);
+        }
+        int matched = 0;
+        for (int i = 0; i < n; i++) {
+            if (texts[candidates[i]].contains(query)) {
+                candidates[matched++] = candidates[i];
+            }
+        }
+        return Arrays.copyOf(candidates, matched);
+    }
+
+    /**
+     * Keep the first n values of a that also appear in b[from, to); both sorted. Returns the new n.
+     */
+    private static int intersect(int[] a, int n, int[] b, int from, int to) {
+        int kept = 0;
+        for (int i = 0, j = from; i < n && j < to; ) {
+            if (a[i] == b[j]) {
+                a[kept++] = a[i];
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return kept;
+    }
+
+    // one or two chars say too little for a substring match to be useful; match words starting with them
+    private int[] tokenPrefixMatches(String prefix) {
+        int at = Arrays.binarySearch(tokens, prefix);
+        if (at < 0) {
+            at = -at - 1;
+        }
+        BitSet docs = new BitSet(size);
+        for (int t = at; t < tokens.length && tokens[t].startsWith(prefix); t++) {
+            for (int p = tokenStart[t]; p < tokenStart[t + 1]; p++) {
+                docs.set(tokenDocs[p]);
+            }
+        }
+        return docs.stream().toArray();
+    }
+
+    private static boolean isWord(String query) {
+        for (int i = 0; i < query.length(); i++) {
+            if (!Character.isLetterOrDigit(query.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // the SQL's (^|[^[:alnum:]])query for a query with punctuation in it, which words alone can't answer
+    private int[] wordStartMatches(String query) {
+        int[] docs = new int[size];
+        int n = 0;
+        for (int doc = 0; doc < size; doc++) {
+            String text = texts[doc];
+            for (int at = text.indexOf(query); at >= 0; at = text.indexOf(query, at + 1)) {
+                if (at == 0 || !Character.isLetterOrDigit(text.charAt(at - 1))) {
+                    docs[n++] = doc;
+                    break;
+                }
+            }
+        }
+        return Arrays.copyOf(docs, n);
+    }
+
+    private int[] inOrder(int[] hits, Ordering ordering, boolean descending, int from, int to) {
+        int[] order = ordering.order;
+        int[] page = new int[to - from];
+        if (page.length == 0) {
+            return page;
+        }
+        if ((long) hits.length * WALK_ORDER_DIVISOR >= size) {
+            // a large share of the catalog: walk the precomputed order and skip what didn't match
+            BitSet matched = new BitSet(size);
+            for (int doc : hits) {
+                matched.set(doc);
+            }
+            int seen = 0;
+            int n = 0;
+            for (int i = 0; i < size && n < page.length; i++) {
+                int doc = order[descending ? size - 1 - i : i];
+                if (matched.get(doc) && seen++ >= from) {
+                    page[n++] = doc;
+                }
+            }
+            return page;
+        }
+        int[] ranks = ordering.positions(hits);
+        for (int i = 0; i < page.length; i++) {
+            int position = descending ? ranks.length - 1 - (from + i) : from + i;
+            page[i] = order[ranks[position]];
+        }
+        return page;
+    }
+
+    private Hits bySimilarity(int[] hits, String query, int from, int to) {
+        long[] queryTrigrams = Text.wordTrigrams(query);
+        double[] scores = new double[hits.length];
+        Integer[] sorted = new Integer[hits.length];
+        for (int i = 0; i < hits.length; i++) {
+            double best = 0;
+            for (String field : texts[hits[i]].split(String.valueOf(Text.FIELD_SEPARATOR))) {
+                best = Math.max(best, Text.similarity(queryTrigrams, Text.wordTrigrams(field)));
+            }
+            scores[i] = best;
+            sorted[i] = i;
+        }
+        // best match first, then id (hits are in id order)
+        Arrays.sort(sorted, (a, b) -> scores[a] != scores[b] ? Double.compare(scores[b], scores[a]) : Integer.compare(a, b));
+        int[] page = new int[to - from];
+        double[] pageScores = new double[page.length];
+        for (int i = 0; i < page.length; i++) {
+            page[i] = hits[sorted[from + i]];
+            pageScores[i] = scores[sorted[from + i]];
+        }
+        return new Hits(hits.length, page, pageScores);
+    }
+
+    static CatalogSnapshot build(Collection<CatalogDocument> documents) {
+        return new CatalogSnapshot(new Builder(documents, null, List.of()));
+    }
+
+    /**
+     * A full snapshot to replace previous. When the documents keep their numbers (none removed,
+     * new manga all after the old ones in id order, as identity ids go) the status and genre
+     * bitmaps are previous' with just the changed and new documents moved, instead of rebuilt.
+     *
+     * @param changedIds the manga changed since previous was built
+     */
+    static CatalogSnapshot rebuild(Collection<CatalogDocument> documents, CatalogSnapshot previous,
+                                   Collection<Long> changedIds) {
+        return new CatalogSnapshot(new Builder(documents, previous, changedIds));
+    }
+
+    private static final class Builder {
+        int size;
+        long[] ids;
+        String[] texts;
+        Map<String, Integer> statusCodes = new HashMap<>();
+        Bitmap[] statusDocs;
+        Map<String, Integer> genreCodes = new HashMap<>();
+        Bitmap[] genreDocs;
+        TrigramTerms trigramTerms;
+        int[] trigramStart;
+        int[] trigramDocs;
+        String[] tokens;
+        int[] tokenStart;
+        int[] tokenDocs;
+        Ordering byTitle;
+        Ordering byAuthor;
+        Ordering byYear;
+
+        Builder(Collection<CatalogDocument> documents, CatalogSnapshot previous, Collection<Long> changedIds) {
+            List<CatalogDocument> docs = new ArrayList<>(documents);
+            docs.sort(Comparator.comparingLong(CatalogDocument::id));
+            size = docs.size();
+            boolean renumbered = previous == null || previous.size > size;
+            for (int doc = 0; !renumbered && doc < previous.size; doc++) {
+                renumbered = docs.get(doc).id() != previous.ids[doc];
+            }
+            if (!renumbered) {
+                // same codes as before, so the previous bitmaps still line up
+                statusCodes.putAll(previous.statusCodes);
+                genreCodes.putAll(previous.genreCodes);
+            }
+            ids = new long[size];
+            texts = new String[size];
+            int[] statuses = new int[size];
+            int[][] genres = new int[size][];
+            String[] titles = new String[size];
+            String[] authors = new String[size];
+            Integer[] years = new Integer[size];
+
+            for (int doc = 0; doc < size; doc++) {
+                CatalogDocument d = docs.get(doc);
+                ids[doc] = d.id();
+                titles[doc] = Text.normalize(d.title());
+                authors[doc] = d.author() != null ? Text.normalize(d.author()) : null;
+                years[doc] = d.year();
+                StringBuilder text = new StringBuilder(titles[doc])
+                    .append(Text.FIELD_SEPARATOR).append(Text.normalize(d.author()));
+                for (String alt : d.altTitles()) {
+                    text.append(Text.FIELD_SEPARATOR).append(Text.normalize(alt));
+                }
+                texts[doc] = text.toString();
+                statuses[doc] = d.status() != null ? statusCodes.computeIfAbsent(d.status(), s -> statusCodes.size()) : -1;
+                genres[doc] = d.genres().stream()
+                    .mapToInt(genre -> genreCodes.computeIfAbsent(genre, g -> genreCodes.size()))
+                    .distinct()
+                    .toArray();
+            }
+
+            IntFunction<int[]> statusOf = doc -> statuses[doc] >= 0 ? new int[] { statuses[doc] } : new int[0];
+            IntFunction<int[]> genresOf = doc -> genres[doc];
+            if (renumbered) {
+                int[] all = new int[size];
+                Arrays.setAll(all, doc -> doc);
+                statusDocs = bitmaps(all, statusCodes.size(), statusOf);
+                genreDocs = bitmaps(all, genreCodes.size(), genresOf);
+            } else {
+                // the changed documents, then the new ones
+                int[] touched = IntStream.concat(
+                        changedIds.stream().mapToInt(previous::doc).filter(doc -> doc >= 0).sorted().distinct(),
+                        IntStream.range(previous.size, size))
+                    .toArray();
+                statusDocs = moved(previous.statusDocs, touched, statusCodes.size(), statusOf);
+                genreDocs = moved(previous.genreDocs, touched, genreCodes.size(), genresOf);
+            }
+            buildTrigramPostings();
+            buildTokenPostings();
+
+            byTitle = new Ordering(titles, Text::normalize);
+            byAuthor = new Ordering(authors, Text::normalize);
+            byYear = new Ordering(years, Integer::valueOf);
+        }
+
+        // two passes over the same trigrams: count per term, then fill; nothing per document is kept
+        private void buildTrigramPostings() {
+            trigramTerms = new TrigramTerms(size * 2);
+            int[] counts = new int[1024];
+            for (String text : texts) {
+                for (long trigram : Text.substringTrigrams(text)) {
+                    int term = trigramTerms.add(trigram);
+                    if (term == counts.length) {
+                        counts = Arrays.copyOf(counts, counts.length * 2);
+                    }
+                    counts[term]++;
+                }
+            }
+            int terms = trigramTerms.size();
+            trigramStart = offsets(counts, terms);
+            trigramDocs = new int[trigramStart[terms]];
+            int[] fill = Arrays.copyOf(trigramStart, terms);
+            for (int doc = 0; doc < size; doc++) {
+                for (long trigram : Text.substringTrigrams(texts[doc])) {
+                    trigramDocs[fill[trigramTerms.get(trigram)]++] = doc;
+                }
+            }
+        }
+
+        // same two passes as trigrams; words are numbered as they're seen, then renumbered in sorted order
+        private void buildTokenPostings() {
+            Map<String, Integer> seen = new HashMap<>();
+            int[] counts = new int[1024];
+            for (String text : texts) {
+                for (String token : distinctTokens(text)) {
+                    int term = seen.computeIfAbsent(token, t -> seen.size());
+                    if (term == counts.length) {
+                        counts = Arrays.copyOf(counts, counts.length * 2);
+                    }
+                    counts[term]++;
+                }
+            }
+            tokens = seen.keySet().toArray(new String[0]);
+            Arrays.sort(tokens);
+            int[] sortedCounts = new int[tokens.length];
+            int[] position = new int[tokens.length];
+            for (int t = 0; t < tokens.length; t++) {
+                int term = seen.get(tokens[t]);
+                position[term] = t;
+                sortedCounts[t] = counts[term];
+            }
+            tokenStart = offsets(sortedCounts, tokens.length);
+            tokenDocs = new int[tokenStart[tokens.length]];
+            int[] fill = Arrays.copyOf(tokenStart, tokens.length);
+            for (int doc = 0; doc < size; doc++) {
+                for (String token : distinctTokens(texts[doc])) {
+                    tokenDocs[fill[position[seen.get(token)]]++] = doc;
+                }
+            }
+        }
+
+        // per code, the bitmap of the given (ascending) documents that have it
+        private static Bitmap[] bitmaps(int[] docs, int codes, IntFunction<int[]> codesOf) {
+            int[][] byCode = byCode(docs, codes, codesOf);
+            Bitmap[] bitmaps = new Bitmap[codes];
+            for (int code = 0; code < codes; code++) {
+                bitmaps[code] = Bitmap.of(byCode[code]);
+            }
+            return bitmaps;
+        }
+
+        // the previous bitmaps with the touched documents taken out of every code and added back under their current ones
+        private static Bitmap[] moved(Bitmap[] previous, int[] touched, int codes, IntFunction<int[]> codesOf) {
+            Bitmap touchedDocs = Bitmap.of(touched);
+            int[][] byCode = byCode(touched, codes, codesOf);
+            Bitmap[] bitmaps = new Bitmap[codes];
+            for (int code = 0; code < codes; code++) {
+                Bitmap kept = code < previous.length ? previous[code].andNot(touchedDocs) : Bitmap.EMPTY;
+                bitmaps[code] = kept.add(byCode[code]);
+            }
+            return bitmaps;
+        }
+
+        // per code, the documents that have it; documents are visited in order, so each list comes out sorted
+        private static int[][] byCode(int[] docs, int codes, IntFunction<int[]> codesOf) {
+            int[] counts = new int[codes];
+            for (int doc : docs) {
+                for (int code : codesOf.apply(doc)) {
+                    counts[code]++;
+                }
+            }
+            int[][] byCode = new int[codes][];
+            for (int code = 0; code < codes; code++) {
+                byCode[code] = new int[counts[code]];
+            }
+            int[] fill = new int[codes];
+            for (int doc : docs) {
+                for (int code : codesOf.apply(doc)) {
+                    byCode[code][fill[code]++] = doc;
+                }
+            }
+            return byCode;
+        }
+
+        private static Collection<String> distinctTokens(String text) {
+            List<String> tokens = Text.tokens(text);
+            return tokens.size() < 2 ? tokens : new HashSet<>(tokens);
+        }
+
+        private static int[] offsets(int[] counts, int terms) {
+            int[] start = new int[terms + 1];
+            for (int term = 0; term < terms; term++) {
+                start[term + 1] = start[term] + counts[term];
+            }
+            return start;
+        }
+    }
+
+    /**
+     * Documents in ascending order of one sort key (nulls last; ties by document number,
+     * which is id order) and each document's position in that order. Strings compare by code
+     * point, as Postgres does under COLLATE "C".
+     */
+    private static final class Ordering {
+
+        @SuppressWarnings("unchecked")
+        private static final Comparator<Object> KEY_ORDER = Comparator.nullsLast((a, b) ->
+            a instanceof String left ? Text.compareCodePoints(left, (String) b) : ((Comparable<Object>) a).compareTo(b));
+
+        final Object[] keys;
+        private final Function<String, Object> parse;
+        final int[] order;
+        private final int[] rank;
+
+        Ordering(Object[] keys, Function<String, Object> parse) {
+            this.keys = keys;
+            this.parse = parse;
+            Integer[] docs = new Integer[keys.length];
+            for (int doc = 0; doc < keys.length; doc++) {
+                docs[doc] = doc;
+            }
+            Arrays.sort(docs, (a, b) -> {
+                int byKey = KEY_ORDER.compare(keys[a], keys[b]);
+                return byKey != 0 ? byKey : Integer.compare(a, b);
+            });
+            order = new int[keys.length];
+            rank = new int[keys.length];
+            for (int position = 0; position < keys.length; position++) {
+                order[position] = docs[position];
+                rank[docs[position]] = position;
+            }
+        }
+
+        /**
+         * A cursor's key in the form this ordering compares (null stays null)
+         */
+        Object key(String value) {
+            return value != null ? parse.apply(value) : null;
+        }
+
+        /**
+         * Sorted positions of the given documents
+         */
+        int[] positions(int[] docs) {
+            int[] positions = new int[docs.length];
+            for (int i = 0; i < docs.length; i++) {
+                positions[i] = rank[docs[i]];
+            }
+            Arrays.sort(positions);
+            return positions;
+        }
+
+        /**
+         * The first position whose (key, id) is past the given one; or, unless strict, equal to it
+         */
+        int boundary(Object key, long id, long[] ids, boolean strict) {
+            int low = 0;
+            int high = order.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                int doc = order[mid];
+                int cmp = KEY_ORDER.compare(keys[doc], key);
+                if (cmp == 0) {
+                    cmp = Long.compare(ids[doc], id);
+                }
+                if (cmp > 0 || (cmp == 0 && !strict)) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Trigram -> term number, open addressing over primitive arrays (several hundred thousand
+     * distinct trigrams once CJK titles are in; boxed map entries would dominate the index)
+     */
+    private static final class TrigramTerms {
+        private long[] keys;
+        private int[] terms;
+        private int mask;
+        private int size;
+
+        TrigramTerms(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(1 << 10, expected * 2 - 1)) << 1;
+            keys = new long[capacity];
+            terms = new int[capacity];
+            Arrays.fill(terms, -1);
+            mask = capacity - 1;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int get(long key) {
+            for (int slot = slot(key); terms[slot] >= 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return terms[slot];
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * The term number of the trigram, numbering it if it's new
+         */
+        int add(long key) {
+            int slot = slot(key);
+            for (; terms[slot] >= 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return terms[slot];
+                }
+            }
+            keys[slot] = key;
+            terms[slot] = size++;
+            if (size * 2 > terms.length) {
+                grow();
+            }
+            return size - 1;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldTerms = terms;
+            keys = new long[oldKeys.length * 2];
+            terms = new int[oldTerms.length * 2];
+            Arrays.fill(terms, -1);
+            mask = terms.length - 1;
+            for (int i = 0; i < oldTerms.length; i++) {
+                if (oldTerms[i] >= 0) {
+                    int slot = slot(oldKeys[i]);
+                    while (terms[slot] >= 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    terms[slot] = oldTerms[i];
+                }
+            }
+        }
+
+        private int slot(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+}
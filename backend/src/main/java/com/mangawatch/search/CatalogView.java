@@ -0,0 +1,138 @@
+package com.mangawatch.search;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import com.mangawatch.repository.MangaKeyset;
+import com.mangawatch.repository.MangaSearchCriteria;
+import com.mangawatch.repository.MangaSearchRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * What searches read: a base {@link CatalogSnapshot} of the whole catalog, the base documents
+ * that changed or went away since it was built (a tombstone bitmap), and a small delta
+ * snapshot holding the current version of every manga changed or added since. A search runs
+ * against both and merges the two ordered results, so a refresh only has to rebuild the delta.
+ *
+ * Immutable, like the snapshots.
+ */
+final class CatalogView {
+
+    private static final CatalogSnapshot NO_CHANGES = CatalogSnapshot.build(List.of());
+
+    private final CatalogSnapshot base;
+    private final Bitmap replaced;
+    private final CatalogSnapshot delta;
+
+    private CatalogView(CatalogSnapshot base, Bitmap replaced, CatalogSnapshot delta) {
+        this.base = base;
+        this.replaced = replaced;
+        this.delta = delta;
+    }
+
+    static CatalogView of(CatalogSnapshot base) {
+        return new CatalogView(base, Bitmap.EMPTY, NO_CHANGES);
+    }
+
+    /**
+     * This view with more manga changed: their base documents join the tombstones, and the
+     * delta is rebuilt
+     *
+     * @param refreshedIds the manga changed since this view, deleted ones included
+     * @param current      the current version of every manga changed since the base was built
+     *                     that still exists, these included
+     */
+    CatalogView withChanges(Collection<Long> refreshedIds, Collection<CatalogDocument> current) {
+        int[] docs = refreshedIds.stream().mapToInt(base::doc).filter(doc -> doc >= 0).toArray();
+        return new CatalogView(base, replaced.add(docs), CatalogSnapshot.build(current));
+    }
+
+    CatalogSnapshot base() {
+        return base;
+    }
+
+    /**
+     * Manga in the delta, changed or added since the base was built
+     */
+    int deltaSize() {
+        return delta.size();
+    }
+
+    int size() {
+        return base.size() - replaced.cardinality() + delta.size();
+    }
+
+    /**
+     * See {@link CatalogSnapshot#search}
+     */
+    Page<Long> search(MangaSearchCriteria criteria, String sortProperty, boolean descending, Pageable pageable) {
+        if (delta.size() == 0 && replaced.isEmpty()) {
+            return base.search(criteria, sortProperty, descending, pageable);
+        }
+        // the first offset + size of each side are enough to know the first offset + size of both
+        int limit = pageable.isPaged()
+            ? (int) Math.min((long) pageable.getOffset() + pageable.getPageSize(), Integer.MAX_VALUE)
+            : Integer.MAX_VALUE;
+        CatalogSnapshot.Hits fromBase = base.top(criteria, replaced, sortProperty, descending, limit);
+        CatalogSnapshot.Hits fromDelta = delta.top(criteria, null, sortProperty, descending, limit);
+
+        boolean bySimilarity = MangaSearchRepository.SIMILARITY.equals(sortProperty) && criteria.query() != null;
+        // a similarity sort without a query is by title, ascending
+        boolean similarity = MangaSearchRepository.SIMILARITY.equals(sortProperty);
+        String property = similarity ? "title" : sortProperty;
+        boolean reversed = descending && !similarity;
+        List<Long> merged = merge(fromBase, fromDelta, property, bySimilarity, reversed, limit);
+
+        int total = fromBase.total() + fromDelta.total();
+        int from = pageable.isPaged() ? (int) Math.min(pageable.getOffset(), merged.size()) : 0;
+        return new PageImpl<>(new ArrayList<>(merged.subList(from, merged.size())), pageable, total);
+    }
+
+    /**
+     * See {@link CatalogSnapshot#seek}
+     */
+    List<Long> seek(MangaSearchCriteria criteria, MangaKeyset keyset, int limit) {
+        if (delta.size() == 0 && replaced.isEmpty()) {
+            return base.seek(criteria, keyset, limit);
+        }
+        int[] fromBase = base.seekDocs(criteria, replaced, keyset, limit);
+        int[] fromDelta = delta.seekDocs(criteria, null, keyset, limit);
+        return merge(new CatalogSnapshot.Hits(fromBase.length, fromBase, null),
+            new CatalogSnapshot.Hits(fromDelta.length, fromDelta, null),
+            keyset.property(), false, keyset.descending(), limit);
+    }
+
+    // the first limit ids of both results in their common order
+    private List<Long> merge(CatalogSnapshot.Hits a, CatalogSnapshot.Hits b, String property, boolean bySimilarity,
+                             boolean descending, int limit) {
+        int[] left = a.docs();
+        int[] right = b.docs();
+        List<Long> ids = new ArrayList<>(Math.min(limit, left.length + right.length));
+        int i = 0;
+        int j = 0;
+        while (ids.size() < limit && (i < left.length || j < right.length)) {
+            boolean takeLeft;
+            if (i == left.length) {
+                takeLeft = false;
+            } else if (j == right.length) {
+                takeLeft = true;
+            } else if (bySimilarity) {
+                // best match first, then id, as in CatalogSnapshot
+                int cmp = Double.compare(b.scores()[j], a.scores()[i]);
+                takeLeft = cmp != 0 ? cmp < 0 : base.id(left[i]) < delta.id(right[j]);
+            } else {
+                int cmp = CatalogSnapshot.compareKeys(base.sortKey(property, left[i]), delta.sortKey(property, right[j]));
+                if (cmp == 0) {
+                    cmp = Long.compare(base.id(left[i]), delta.id(right[j]));
+                }
+                takeLeft = descending ? cmp > 0 : cmp < 0;
+            }
+            ids.add(takeLeft ? base.id(left[i++]) : delta.id(right[j++]));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,42 @@
+package com.mangawatch.search;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mangawatch.importer.MangaCatalogChangedEvent;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Exact match counts of SQL searches, so paging through a result (or the same popular search
+ * from many people) counts once instead of on every page. Keyed by
+ * {@link com.mangawatch.repository.MangaSearchCriteria#cacheKey()}; emptied whenever an import
+ * batch commits, and entries also expire on their own.
+ */
+@Component
+public class SearchCountCache {
+
+    private final Cache<String, Long> counts;
+
+    public SearchCountCache(
+            @Value("${search.total.cache-size:10000}") long maximumSize,
+            @Value("${search.total.cache-ttl-minutes:10}") long ttlMinutes) {
+        this.counts = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+            .build();
+    }
+
+    public long get(String key, LongSupplier count) {
+        return counts.get(key, k -> count.getAsLong());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(MangaCatalogChangedEvent event) {
+        counts.invalidateAll();
+    }
+}
@@ -0,0 +1,107 @@
+package com.mangawatch.search;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.mangawatch.importer.MangaCatalogChangedEvent;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Pages of /api/manga results (ids plus total, not the manga themselves), so the same popular
+ * search is worked out once and afterwards only costs loading its page.
+ *
+ * Keys are the normalized search ({@link com.mangawatch.repository.MangaSearchCriteria#cacheKey()}),
+ * the mapped sort column and direction, page, size and total mode, tagged with the catalog
+ * version and the search index generation. Each committed import batch bumps the version and
+ * empties the cache; a search that was already running when the batch committed stores its
+ * result under the old version, where nobody looks it up again. The index generation does the
+ * same for the few seconds until imported rows reach the in-memory index.
+ *
+ * Bounded by the number of ids held (search.results.cache-max-ids) rather than entries, since
+ * a size=2000 page weighs a hundred times a size=20 one.
+ */
+@Component
+public class SearchResultCache {
+
+    /**
+     * A cached page: the ids in order, whether there's a next page, and the total;
+     * total is -1 when none was asked for, estimated when it's the planner's guess
+     */
+    public record Entry(List<Long> ids, boolean hasNext, long total, boolean estimated) {
+        public Entry {
+            ids = List.copyOf(ids);
+        }
+    }
+
+    private record Key(long version, long generation, String search, String sort, boolean descending,
+                       int page, int size, String total) {}
+
+    private final CatalogSearchIndex searchIndex;
+    private final boolean enabled;
+    private final Cache<Key, Entry> results;
+    private final AtomicLong version = new AtomicLong();
+
+    public SearchResultCache(
+            CatalogSearchIndex searchIndex,
+            @Value("${search.results.cache-enabled:true}") boolean enabled,
+            @Value("${search.results.cache-max-ids:500000}") long maximumIds,
+            @Value("${search.results.cache-ttl-minutes:10}") long ttlMinutes) {
+        this.searchIndex = searchIndex;
+        this.enabled = enabled;
+        this.results = Caffeine.newBuilder()
+            .maximumWeight(maximumIds)
+            .weigher((Key key, Entry entry) -> 1 + entry.ids().size())
+            .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+            .recordStats()
+            .build();
+    }
+
+    /**
+     * The cached page of a search, computing and storing it on a miss
+     *
+     * @param search {@link com.mangawatch.repository.MangaSearchCriteria#cacheKey()}
+     * @param sort   the mapped sort column
+     * @param total  the requested total mode
+     */
+    public Entry get(String search, String sort, boolean descending, int page, int size, String total,
+                     Supplier<Entry> compute) {
+        if (!enabled) {
+            return compute.get();
+        }
+        Key key = new Key(version.get(), searchIndex.generation(), search, sort, descending, page, size, total);
+        return results.get(key, k -> compute.get());
+    }
+
+    /**
+     * Hit ratio and size, for /api/manga/stats
+     */
+    public Map<String, Object> stats() {
+        CacheStats stats = results.stats();
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", enabled);
+        out.put("entries", results.estimatedSize());
+        out.put("hits", stats.hitCount());
+        out.put("misses", stats.missCount());
+        out.put("hitRatio", stats.hitRate());
+        out.put("evictions", stats.evictionCount());
+        out.put("averageLoadMillis", stats.averageLoadPenalty() / 1_000_000.0);
+        out.put("catalogVersion", version.get());
+        return out;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(MangaCatalogChangedEvent event) {
+        version.incrementAndGet();
+        results.invalidateAll();
+    }
+}
@@ -0,0 +1,142 @@
+package com.mangawatch.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Text handling shared by index builds and queries. Trigrams are three chars packed into
+ * the low 48 bits of a long.
+ */
+final class Text {
+
+    /**
+     * Joins the fields of a document's searchable text; never part of a query or a trigram
+     */
+    static final char FIELD_SEPARATOR = '\n';
+
+    private Text() {}
+
+    /**
+     * Lowercase, the way the SQL search compares (lower(col) LIKE lower(pattern))
+     */
+    static String normalize(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Sorted, distinct trigrams of every position of the text, skipping those that would
+     * cross a field separator. A string containing the query contains all of these.
+     */
+    static long[] substringTrigrams(String text) {
+        if (text.length() < 3) {
+            return new long[0];
+        }
+        long[] trigrams = new long[text.length() - 2];
+        int n = 0;
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            char a = text.charAt(i), b = text.charAt(i + 1), c = text.charAt(i + 2);
+            if (a != FIELD_SEPARATOR && b != FIELD_SEPARATOR && c != FIELD_SEPARATOR) {
+                trigrams[n++] = pack(a, b, c);
+            }
+        }
+        return distinct(trigrams, n);
+    }
+
+    /**
+     * Words, i.e. maximal runs of letters and digits
+     */
+    static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Trigrams the way pg_trgm takes them for similarity(): per word, padded with two
+     * spaces in front and one behind. Sorted and distinct.
+     */
+    static long[] wordTrigrams(String text) {
+        List<String> words = tokens(text);
+        int total = 0;
+        for (String word : words) {
+            total += word.length() + 1;
+        }
+        long[] trigrams = new long[total];
+        int n = 0;
+        for (String word : words) {
+            String padded = "  " + word + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                trigrams[n++] = pack(padded.charAt(i), padded.charAt(i + 1), padded.charAt(i + 2));
+            }
+        }
+        return distinct(trigrams, n);
+    }
+
+    /**
+     * Code point order, which is UTF-8 byte order and so Postgres' COLLATE "C". String.compareTo
+     * compares UTF-16 units and puts chars past a surrogate pair (U+E000 and up) after it.
+     */
+    static int compareCodePoints(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int x = a.codePointAt(i);
+            int y = b.codePointAt(j);
+            if (x != y) {
+                return Integer.compare(x, y);
+            }
+            i += Character.charCount(x);
+            j += Character.charCount(y);
+        }
+        return Boolean.compare(i < a.length(), j < b.length());
+    }
+
+    /**
+     * Shared trigrams over all trigrams of both (pg_trgm's similarity), for sorted distinct
+     * arrays. Worked out in float like pg_trgm, so scores that tie there tie here too.
+     */
+    static double similarity(long[] a, long[] b) {
+        if (a.length == 0 || b.length == 0) {
+            return 0;
+        }
+        int shared = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] == b[j]) {
+                shared++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return (float) shared / (float) (a.length + b.length - shared);
+    }
+
+    private static long pack(char a, char b, char c) {
+        return ((long) a << 32) | ((long) b << 16) | c;
+    }
+
+    private static long[] distinct(long[] values, int n) {
+        Arrays.sort(values, 0, n);
+        int unique = 0;
+        for (int i = 0; i < n; i++) {
+            if (unique == 0 || values[i] != values[unique - 1]) {
+                values[unique++] = values[i];
+            }
+        }
+        return unique == values.length ? values : Arrays.copyOf(values, unique);
+    }
+}
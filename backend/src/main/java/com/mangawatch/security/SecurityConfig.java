@@ -81,6 +81,9 @@ public class SecurityConfig {
         // allow all headers
         config.setAllowedHeaders(java.util.List.of("*"));
         
+        // let the frontend read how /api/manga counted its results
+        config.setExposedHeaders(java.util.List.of("X-Total-Mode"));
+        
         // allow credentials (cookies, authorization headers)
         config.setAllowCredentials(false);
         
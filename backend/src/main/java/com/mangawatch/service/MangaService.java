@@ -1,19 +1,40 @@
 package com.mangawatch.service;
 
+import com.mangawatch.config.CacheConfig;
+import com.mangawatch.dto.CursorPage;
 import com.mangawatch.dto.MangaDto;
+import com.mangawatch.importer.MangaCatalogChangedEvent;
 import com.mangawatch.mapper.MangaMapper;
 import com.mangawatch.model.Manga;
+import com.mangawatch.repository.MangaKeyset;
 import com.mangawatch.repository.MangaRepository;
+import com.mangawatch.repository.MangaSearchCriteria;
+import com.mangawatch.repository.MangaSearchRepository;
+import com.mangawatch.search.CatalogSearchIndex;
+import com.mangawatch.search.SearchCountCache;
+import com.mangawatch.search.SearchResultCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 
@@ -21,117 +42,299 @@ import java.util.Optional;
 @Service
 public class MangaService {
     private final MangaRepository repo;
+    private final CatalogSearchIndex searchIndex;
+    private final SearchCountCache countCache;
+    private final SearchResultCache resultCache;
+    private final CacheManager cacheManager;
+    private final long exactCountBelow;
 
-    public MangaService(MangaRepository repo) {
+    public MangaService(MangaRepository repo, CatalogSearchIndex searchIndex, SearchCountCache countCache,
+                        SearchResultCache resultCache, CacheManager cacheManager,
+                        @Value("${search.total.exact-below:1000}") long exactCountBelow) {
         this.repo = repo;
+        this.searchIndex = searchIndex;
+        this.countCache = countCache;
+        this.resultCache = resultCache;
+        this.cacheManager = cacheManager;
+        this.exactCountBelow = exactCountBelow;
     }
     
     private static final Logger log = LoggerFactory.getLogger(MangaService.class);
     
-    private static final Map<String, String> ENTITY_SORT_MAP = Map.of(
-    	    "year", "releaseYear",
-    	    "title", "title",
-    	    "author", "author"
-    	);
-
     	private static final Map<String, String> COLUMN_SORT_MAP = Map.of(
     	    "year", "release_year",
     	    "title", "title",
-    	    "author", "author"
+    	    "author", "author",
+    	    "similarity", MangaSearchRepository.SIMILARITY,
+    	    "relevance", MangaSearchRepository.RELEVANCE
     	);
 
+    /**
+     * How {@link #search} reports the number of matches
+     */
+    public enum Total {
+        /** exact count; free from the search index, cached per search in SQL */
+        EXACT,
+        /** the planner's estimate when it's large, an exact count below search.total.exact-below */
+        ESTIMATE,
+        /** no count, only whether there's a next page */
+        NONE;
+
+        /**
+         * @throws IllegalArgumentException for anything but exact, estimate or none
+         */
+        public static Total parse(String value) {
+            return value == null || value.isBlank() ? EXACT : valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * A page of search results: a {@link Page} when there's a total, a {@link Slice} for
+     * {@link Total#NONE}. total says what the page's total is (an ESTIMATE request can still
+     * come back EXACT).
+     */
+    public record Results(Slice<MangaDto> page, Total total) {}
+
     /**
      * search manga with filters and pagination
+     *
+     * A manga needs one of genres (every one of them if allGenres) and none of excludedGenres.
+     *
+     * Sort is "field,dir" with field one of title, author, year, similarity (best trigram
+     * match first) or relevance (full-text match, ranked). Without a sort, searches with a
+     * query are ordered by similarity and everything else by title.
+     *
+     * Answered by the in-memory {@link CatalogSearchIndex} when it's ready (everything but
+     * relevance), with the database only loading the returned page; SQL otherwise. The page's
+     * ids and total are kept in {@link SearchResultCache} until the next import batch.
      */
-    public Page<MangaDto> search(String query, String status, List<String> genres, String sort, Pageable pageable) {
+    public Results search(String query, String status, List<String> genres, boolean allGenres,
+                          List<String> excludedGenres, String sort, Total total, Pageable pageable) {
     	
-        boolean useNative =
-                (genres != null && !genres.isEmpty()) ||
-                (status != null && !status.isBlank()) ||
-                (query != null && !query.isBlank());
+        MangaSearchCriteria criteria = MangaSearchCriteria.of(query, status, genres, allGenres, excludedGenres);
     	
     	// can also log HttpServletRequest.getQueryString() for some more info?
-    	log.info("Incoming /api/manga request: query='{}', status='{}', genres={}, sort='{}', page={}",
-                query, status, genres, pageable.getPageNumber());
+    	log.info("Incoming /api/manga request: query='{}', status='{}', genres={} ({}), excluded={}, sort='{}', total={}, page={}",
+                query, status, genres, allGenres ? "all" : "any", excludedGenres, sort, total, pageable.getPageNumber());
         
-        String sortField = "title";
-        Sort.Direction sortDir = Sort.Direction.ASC;
-
-        if (sort != null && !sort.isBlank()) {
-            String[] parts = sort.split(",");
-            sortField = parts[0];
-            if (parts.length > 1 && "desc".equalsIgnoreCase(parts[1])) {
-                sortDir = Sort.Direction.DESC;
-            }
-        }
+        String[] requested = parseSort(sort, criteria.query() != null ? MangaSearchRepository.SIMILARITY : "title");
+        String sortField = requested[0];
+        Sort.Direction sortDir = "desc".equalsIgnoreCase(requested[1]) ? Sort.Direction.DESC : Sort.Direction.ASC;
         
-        sortField = useNative
-                ? COLUMN_SORT_MAP.getOrDefault(sortField, "title")
-                : ENTITY_SORT_MAP.getOrDefault(sortField, "title");
-
-        // frontend -> db column mapping (NOT entity fields)
-//        switch (sortField) {
-//            case "year" -> sortField = "release_year";
-//            case "title" -> sortField = "title";
-//            case "author" -> sortField = "author";
-//            default -> sortField = "title"; // safety fallback
-//        }
-
         // Rebuild pageable with DB-safe sort
-        pageable = PageRequest.of(
+        String column = COLUMN_SORT_MAP.getOrDefault(sortField, "title");
+        Pageable byColumn = PageRequest.of(
             pageable.getPageNumber(),
             pageable.getPageSize(),
-            Sort.by(sortDir, sortField)
+            Sort.by(sortDir, column)
         );
-    	
-        // treat empty strings as null
-        query = (query != null && query.trim().isEmpty()) ? null : query;
-        status = (status != null && status.trim().isEmpty()) ? null : status;
-        genres = (genres != null && genres.isEmpty()) ? null : genres;
         
-        Page<Manga> results;
-
-        if (useNative && genres != null && !genres.isEmpty()) {
-            results = repo.searchWithFilters(query, status, genres, pageable);
-        } else if (useNative && status != null) {
-            results = repo.searchByQueryAndStatus(query, status, pageable);
-        } else if (useNative && query != null) {
-            results = repo.searchByQuery(query, pageable);
+        SearchResultCache.Entry ids = resultCache.get(criteria.cacheKey(), column, sortDir.isDescending(),
+            byColumn.getPageNumber(), byColumn.getPageSize(), total.name(), () -> findIds(criteria, byColumn, total));
+        List<MangaDto> content = load(ids.ids()).stream().map(MangaMapper::toDto).toList();
+        Results results = ids.total() < 0
+            ? new Results(new SliceImpl<>(content, byColumn, ids.hasNext()), Total.NONE)
+            : new Results(new PageImpl<>(content, byColumn, ids.total()), ids.estimated() ? Total.ESTIMATE : Total.EXACT);
+        
+        log.info(" returned {} results ({} total: {})", results.page().getNumberOfElements(), results.total(),
+                results.page() instanceof Page<MangaDto> page ? page.getTotalElements() : "-");
+        return results;
+    }
+
+    /**
+     * The page of ids for a search, plus its total unless total is NONE
+     */
+    private SearchResultCache.Entry findIds(MangaSearchCriteria criteria, Pageable pageable, Total total) {
+        Optional<Page<Long>> indexed = searchIndex.search(criteria, pageable);
+        if (indexed.isPresent()) {
+            // the index always knows the exact total
+            Page<Long> ids = indexed.get();
+            return new SearchResultCache.Entry(ids.getContent(), ids.hasNext(),
+                total == Total.NONE ? -1 : ids.getTotalElements(), false);
+        }
+        return searchDatabase(criteria, pageable, total);
+    }
+
+    private SearchResultCache.Entry searchDatabase(MangaSearchCriteria criteria, Pageable pageable, Total total) {
+        Slice<Long> ids = repo.searchIds(criteria, pageable);
+        if (total == Total.NONE) {
+            return new SearchResultCache.Entry(ids.getContent(), ids.hasNext(), -1, false);
+        }
+        if (!ids.hasNext()) {
+            // the last page: the total is whatever came before plus this page
+            return new SearchResultCache.Entry(ids.getContent(), false, pageable.getOffset() + ids.getNumberOfElements(), false);
+        }
+
+        Sort sort = pageable.getSort();
+        if (total == Total.ESTIMATE) {
+            long estimate = repo.estimateMatches(criteria, sort);
+            if (estimate >= exactCountBelow) {
+                // there's at least one row past this page whatever the planner thinks
+                long floor = pageable.getOffset() + ids.getNumberOfElements() + 1;
+                return new SearchResultCache.Entry(ids.getContent(), true, Math.max(estimate, floor), true);
+            }
+        }
+        String key = criteria.cacheKey() + (sort.getOrderFor(MangaSearchRepository.RELEVANCE) != null ? "\u0000fts" : "");
+        long count = countCache.get(key, () -> repo.countMatches(criteria, sort));
+        return new SearchResultCache.Entry(ids.getContent(), true, count, false);
+    }
+
+    /**
+     * Keyset-paginated search: same filters as {@link #search}, but each page starts after the
+     * last row of the previous one instead of at an offset, and there's no total count.
+     *
+     * @param cursor nextCursor of the previous page; blank for the first page, which takes its
+     *               order from sort (title, author or year, optionally ",desc")
+     * @throws IllegalArgumentException for a malformed cursor or a sort keyset paging can't follow
+     */
+    public CursorPage<MangaDto> scroll(String query, String status, List<String> genres, boolean allGenres,
+                                       List<String> excludedGenres, String sort, String cursor, int size) {
+        MangaSearchCriteria criteria = MangaSearchCriteria.of(query, status, genres, allGenres, excludedGenres);
+        MangaKeyset keyset;
+        if (cursor != null && !cursor.isBlank()) {
+            keyset = decodeCursor(cursor);
         } else {
-            results = repo.findAll(pageable);
+            String[] requested = parseSort(sort, "title");
+            String column = COLUMN_SORT_MAP.getOrDefault(requested[0], "title");
+            if (MangaSearchRepository.SIMILARITY.equals(column) || MangaSearchRepository.RELEVANCE.equals(column)) {
+                throw new IllegalArgumentException("Cursor paging supports sort=title, author or year");
+            }
+            keyset = MangaKeyset.first(column, "desc".equalsIgnoreCase(requested[1]));
+        }
+
+        // one extra row says whether there's a next page
+        int limit = size + 1;
+        List<Long> ids = searchIndex.seek(criteria, keyset, limit)
+            .orElseGet(() -> repo.seekIds(criteria, keyset, limit));
+        boolean hasNext = ids.size() > size;
+        List<Manga> page = load(hasNext ? ids.subList(0, size) : ids);
+
+        String nextCursor = null;
+        if (hasNext && !page.isEmpty()) {
+            Manga last = page.get(page.size() - 1);
+            nextCursor = encodeCursor(new MangaKeyset(keyset.property(), keyset.descending(),
+                sortKey(last, keyset.property()), last.getId()));
+        }
+        return new CursorPage<>(page.stream().map(MangaMapper::toDto).toList(), size, hasNext, nextCursor);
+    }
+
+    /**
+     * "field,dir" -> {field, dir}; dir is "asc" unless given as desc
+     */
+    private static String[] parseSort(String sort, String defaultField) {
+        if (sort == null || sort.isBlank()) {
+            return new String[] { defaultField, "asc" };
+        }
+        String[] parts = sort.split(",");
+        String dir = parts.length > 1 && "desc".equalsIgnoreCase(parts[1].trim()) ? "desc" : "asc";
+        return new String[] { parts[0].trim(), dir };
+    }
+
+    private static String sortKey(Manga manga, String column) {
+        return switch (column) {
+            case "author" -> manga.getAuthor();
+            case "release_year" -> manga.getYear() != null ? manga.getYear().toString() : null;
+            default -> manga.getTitle();
+        };
+    }
+
+    // opaque to clients: base64url of "column|asc|id|key", no key part for a null key
+    private static String encodeCursor(MangaKeyset keyset) {
+        String value = keyset.property() + "|" + (keyset.descending() ? "desc" : "asc") + "|" + keyset.afterId()
+            + (keyset.afterKey() != null ? "|" + keyset.afterKey() : "");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static MangaKeyset decodeCursor(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            String[] parts = value.split("\\|", 4);
+            if (parts.length < 3 || !COLUMN_SORT_MAP.containsValue(parts[0])
+                    || MangaSearchRepository.SIMILARITY.equals(parts[0]) || MangaSearchRepository.RELEVANCE.equals(parts[0])) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            String key = parts.length == 4 ? parts[3] : null;
+            if ("release_year".equals(parts[0]) && key != null) {
+                Integer.parseInt(key);
+            }
+            return new MangaKeyset(parts[0], "desc".equals(parts[1]), key, Long.valueOf(parts[2]));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
         }
-        
-        log.info(" found {} results", results.getTotalElements());
-        return results.map(MangaMapper::toDto);
+    }
+
+    /**
+     * Load the manga of a page of ids, keeping the page's order
+     */
+    private List<Manga> load(List<Long> ids) {
+        Map<Long, Manga> byId = new HashMap<>();
+        for (Manga manga : repo.findAllById(ids)) {
+            byId.put(manga.getId(), manga);
+        }
+        List<Manga> ordered = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Manga manga = byId.get(id);
+            // deleted between the search and the load
+            if (manga != null) {
+                ordered.add(manga);
+            }
+        }
+        return ordered;
     }
 
     /**
      * get manga by internal database ID
      */
-    public Optional<Manga> getById(Long id) {
-        return repo.findById(id);
+    @Cacheable(CacheConfig.MANGA_BY_ID)
+    public Optional<MangaDto> getById(Long id) {
+        return repo.findById(id).map(MangaMapper::toDto);
     }
     
     /**
      * get manga by MangaDex ID (dexId)
      */
-    public Optional<Manga> getByDexId(String dexId) {
-        return repo.findByDexId(dexId);
+    @Cacheable(CacheConfig.MANGA_BY_DEX_ID)
+    public Optional<MangaDto> getByDexId(String dexId) {
+        return repo.findByDexId(dexId).map(MangaMapper::toDto);
     }
     
     /**
      * get total count of manga in database
      */
+    @Cacheable(CacheConfig.MANGA_COUNT)
     public long getTotalCount() {
         return repo.count();
     }
+
+    /**
+     * hit ratio etc. of the search result cache
+     */
+    public Map<String, Object> getSearchCacheStats() {
+        return resultCache.stats();
+    }
+
+    /**
+     * hit ratio etc. of the genre, count and lookup caches
+     */
+    public Map<String, Object> getCacheStats() {
+        return CacheConfig.stats(cacheManager);
+    }
     
     /**
      * get all unique genres available in the manga_genres table
      * @return list of genre names, sorted alphabetically
      */
-    @Cacheable("genres")
+    @Cacheable(CacheConfig.GENRES)
     public List<String> getAllGenres() {
         return repo.findAllDistinctGenres();
     }
+
+    /**
+     * An import batch committed: drop the cached genres, count and manga it may have changed
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @CacheEvict(cacheNames = { CacheConfig.GENRES, CacheConfig.MANGA_COUNT, CacheConfig.MANGA_BY_ID,
+        CacheConfig.MANGA_BY_DEX_ID }, allEntries = true)
+    public void onCatalogChanged(MangaCatalogChangedEvent event) {
+    }
 }
@@ -25,6 +25,8 @@ public class MangadexTransformer {
      * 2. Add corresponding Flyway migration
      * 3. Extract the value here from the DTO
      * 4. Set it on the manga object
+     * 5. Write it in MangaBulkWriter and include it in MangaFingerprint
+     * 6. POST /admin/import/retransform to fill it in from the stored payloads (no re-fetch)
      */
     public Manga transform(MangadexResponse.MangadexManga dexManga, String authorName, String coverFileName) {
         Manga manga = new Manga();
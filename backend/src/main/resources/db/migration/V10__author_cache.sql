@@ -0,0 +1,5 @@
+CREATE TABLE IF NOT EXISTS author (
+    dex_id VARCHAR(36) PRIMARY KEY,
+    name TEXT NOT NULL,
+    fetched_at TIMESTAMP NOT NULL DEFAULT now()
+);
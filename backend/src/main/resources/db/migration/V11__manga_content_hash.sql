@@ -0,0 +1,3 @@
+-- Fingerprint of the imported fields, lets re-imports skip titles that haven't changed
+ALTER TABLE manga
+	ADD COLUMN IF NOT EXISTS content_hash VARCHAR(64);
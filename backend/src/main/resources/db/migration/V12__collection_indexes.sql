@@ -0,0 +1,4 @@
+-- Collection rows are looked up by owner on every read (eager fetch) and on every
+-- import diff; without these both are sequential scans.
+CREATE INDEX IF NOT EXISTS idx_manga_alt_titles_manga_id ON manga_alt_titles (manga_id);
+CREATE INDEX IF NOT EXISTS idx_manga_genres_manga_id_genre ON manga_genres (manga_id, genre);
@@ -0,0 +1,31 @@
+-- One row per catalog walk (full import, cursor resume, delta sync)
+CREATE TABLE IF NOT EXISTS import_run (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    type VARCHAR(32) NOT NULL,
+    cursor_field VARCHAR(16) NOT NULL,
+    state VARCHAR(16) NOT NULL,
+    max_manga INT NOT NULL,
+    -- delta sync mark to store once the run completes (full imports only)
+    high_water_mark VARCHAR(32),
+    started_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP NOT NULL,
+    fetched INT NOT NULL DEFAULT 0,
+    inserted INT NOT NULL DEFAULT 0,
+    updated INT NOT NULL DEFAULT 0,
+    skipped INT NOT NULL DEFAULT 0,
+    errors INT NOT NULL DEFAULT 0
+);
+
+-- Committed position of each timeline segment of a run: everything before
+-- (cursor_at, seen_at_cursor) has been saved
+CREATE TABLE IF NOT EXISTS import_checkpoint (
+    run_id BIGINT NOT NULL REFERENCES import_run (id) ON DELETE CASCADE,
+    segment INT NOT NULL,
+    range_from VARCHAR(32),
+    range_until VARCHAR(32),
+    cursor_at VARCHAR(32),
+    seen_at_cursor TEXT[] NOT NULL DEFAULT '{}',
+    done BOOLEAN NOT NULL DEFAULT FALSE,
+    updated_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (run_id, segment)
+);
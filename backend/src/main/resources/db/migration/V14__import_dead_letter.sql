@@ -0,0 +1,14 @@
+-- Manga that failed to import, kept until a retry gets them in
+CREATE TABLE IF NOT EXISTS import_dead_letter (
+    dex_id VARCHAR(64) PRIMARY KEY,
+    stage VARCHAR(16) NOT NULL,
+    reason TEXT,
+    -- the MangaDex manga element as sent (null when it never arrived); the decoded
+    -- DTO re-serialized only for elements that didn't come with their raw JSON
+    payload JSONB,
+    attempts INT NOT NULL DEFAULT 1,
+    first_failed_at TIMESTAMP NOT NULL,
+    last_failed_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_import_dead_letter_last_failed_at ON import_dead_letter (last_failed_at);
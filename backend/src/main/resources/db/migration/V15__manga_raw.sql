@@ -0,0 +1,12 @@
+-- What MangaDex last sent for each title (gzipped JSON of the manga element), so the
+-- transform can be re-run after a schema change without fetching the catalog again
+CREATE TABLE IF NOT EXISTS manga_raw (
+    dex_id VARCHAR(64) PRIMARY KEY,
+    -- the element's updatedAt; an unchanged title isn't rewritten
+    source_updated_at VARCHAR(32),
+    payload BYTEA NOT NULL,
+    stored_at TIMESTAMP NOT NULL
+);
+
+-- already compressed, don't let TOAST try again
+ALTER TABLE manga_raw ALTER COLUMN payload SET STORAGE EXTERNAL;
@@ -0,0 +1,8 @@
+-- Substring search (LIKE '%q%') on title, author and alt titles. A trigram GIN index over
+-- the lowercased value lets Postgres answer those with a bitmap index scan instead of a
+-- sequential scan, and similarity() on the same expressions ranks the matches.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX IF NOT EXISTS idx_manga_title_trgm ON manga USING gin (lower(title) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_manga_author_trgm ON manga USING gin (lower(author) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_manga_alt_titles_trgm ON manga_alt_titles USING gin (lower(alt_title) gin_trgm_ops);
@@ -0,0 +1,22 @@
+-- Weighted full-text document per manga for sort=relevance: title (A) above alt titles (B)
+-- above author (C) above description (D). The 'simple' configuration doesn't stem or drop
+-- stop words, which suits titles and names in many languages better than 'english'.
+-- MangaBulkWriter refreshes the column for every row an import writes.
+CREATE OR REPLACE FUNCTION manga_search_document(title text, alt_titles text, author text, description text)
+RETURNS tsvector
+LANGUAGE sql IMMUTABLE AS $$
+    SELECT setweight(to_tsvector('simple', coalesce(title, '')), 'A') ||
+           setweight(to_tsvector('simple', coalesce(alt_titles, '')), 'B') ||
+           setweight(to_tsvector('simple', coalesce(author, '')), 'C') ||
+           setweight(to_tsvector('simple', coalesce(description, '')), 'D')
+$$;
+
+ALTER TABLE manga ADD COLUMN IF NOT EXISTS search_document tsvector;
+
+UPDATE manga m SET search_document = manga_search_document(
+    m.title,
+    (SELECT string_agg(a.alt_title, ' ') FROM manga_alt_titles a WHERE a.manga_id = m.id),
+    m.author,
+    m.description);
+
+CREATE INDEX IF NOT EXISTS idx_manga_search_document ON manga USING gin (search_document);
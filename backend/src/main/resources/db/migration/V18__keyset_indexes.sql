@@ -0,0 +1,7 @@
+-- Keyset pagination on /api/manga seeks with (sort column, id) > (last key, last id) and
+-- reads the next rows in index order, so deep pages cost the same as the first one.
+-- Title and author sort as lower(col) COLLATE "C", the order the in-memory search index
+-- uses, so a page comes out the same from either; the indexes are on those expressions.
+CREATE INDEX IF NOT EXISTS idx_manga_lower_title_id ON manga ((lower(title) COLLATE "C"), id);
+CREATE INDEX IF NOT EXISTS idx_manga_lower_author_id ON manga ((lower(author) COLLATE "C"), id);
+CREATE INDEX IF NOT EXISTS idx_manga_release_year_id ON manga (release_year, id);
@@ -0,0 +1,5 @@
+CREATE TABLE IF NOT EXISTS import_sync_state (
+    name VARCHAR(50) PRIMARY KEY,
+    high_water_mark VARCHAR(32),
+    last_run_at TIMESTAMP
+);
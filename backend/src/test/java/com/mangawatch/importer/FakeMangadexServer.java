@@ -0,0 +1,378 @@
+package com.mangawatch.importer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Embeddable stand-in for api.mangadex.org and uploads.mangadex.org.
+ *
+ * Serves /manga (limit, offset, order[createdAt|updatedAt]=asc|desc, createdAtSince/updatedAtSince),
+ * /author?ids[]= and /covers/{id}/{file} from generated fixtures or a recorded dump, with
+ * configurable latency and injected 429s / 5xx errors. Runs on an ephemeral local port.
+ */
+public class FakeMangadexServer implements AutoCloseable {
+
+    // MangaDex rejects offset + limit beyond this
+    private static final int OFFSET_WINDOW = 10_000;
+
+    private static final DateTimeFormatter API_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+    private static final String[] STATUSES = { "ongoing", "completed", "hiatus", "cancelled" };
+    private static final String[] TAGS = { "Action", "Romance", "Comedy", "Drama", "Fantasy", "Horror",
+        "Mystery", "Sci-Fi", "Slice of Life", "Sports", "Isekai", "Psychological" };
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<ObjectNode> manga;
+    private final Map<String, List<ObjectNode>> sortedBy = new HashMap<>();
+    private final Map<String, List<ObjectNode>> reversedBy = new HashMap<>();
+    private final Map<String, String[]> sortKeys = new HashMap<>();
+    private final Map<String, String> authors;
+    private final byte[] coverBytes;
+
+    private volatile long latencyMillis;
+    private volatile long latencyJitterMillis;
+    private volatile double rateLimitRate;
+    private volatile double errorRate;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    private HttpServer server;
+
+    private FakeMangadexServer(List<ObjectNode> manga, Map<String, String> authors) {
+        this.manga = manga;
+        this.authors = authors;
+        for (String field : List.of("createdAt", "updatedAt")) {
+            List<ObjectNode> sorted = new ArrayList<>(manga);
+            sorted.sort(Comparator.comparing(node -> instant(node, field)));
+            sortedBy.put(field, sorted);
+            List<ObjectNode> reversed = new ArrayList<>(sorted);
+            Collections.reverse(reversed);
+            reversedBy.put(field, reversed);
+            sortKeys.put(field, sorted.stream().map(node -> instant(node, field)).toArray(String[]::new));
+        }
+        this.coverBytes = new byte[32 * 1024];
+        new Random(0).nextBytes(coverBytes);
+        // enough of a JPEG header for anything sniffing the content
+        coverBytes[0] = (byte) 0xFF;
+        coverBytes[1] = (byte) 0xD8;
+    }
+
+    /**
+     * A deterministic catalog of {@code count} manga sharing {@code count / 4} authors,
+     * created one minute apart so createdAt paging has something to walk.
+     */
+    public static FakeMangadexServer generated(int count, long seed) {
+        Random random = new Random(seed);
+        ObjectMapper mapper = new ObjectMapper();
+        int authorCount = Math.max(1, count / 4);
+        Map<String, String> authors = new LinkedHashMap<>();
+        List<String> authorIds = new ArrayList<>();
+        for (int i = 0; i < authorCount; i++) {
+            String id = new UUID(seed, 1_000_000L + i).toString();
+            authors.put(id, "Author " + i);
+            authorIds.add(id);
+        }
+
+        OffsetDateTime start = OffsetDateTime.of(2018, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+        List<ObjectNode> manga = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String id = new UUID(seed, i).toString();
+            ObjectNode node = mapper.createObjectNode();
+            node.put("id", id);
+            node.put("type", "manga");
+
+            ObjectNode attributes = node.putObject("attributes");
+            attributes.putObject("title").put("en", "Generated Manga " + i);
+            ArrayNode altTitles = attributes.putArray("altTitles");
+            for (int a = random.nextInt(4); a > 0; a--) {
+                altTitles.addObject().put("ja-ro", "Generated Alt " + i + "-" + a);
+            }
+            attributes.putObject("description").put("en", "Synthetic description for manga " + i + ". "
+                + "x".repeat(random.nextInt(600)));
+            attributes.put("originalLanguage", "ja");
+            attributes.put("status", STATUSES[random.nextInt(STATUSES.length)]);
+            if (random.nextInt(5) > 0) {
+                attributes.put("year", 1980 + random.nextInt(45));
+            } else {
+                attributes.putNull("year");
+            }
+            attributes.put("contentRating", "safe");
+            ArrayNode tags = attributes.putArray("tags");
+            for (int t = 1 + random.nextInt(5); t > 0; t--) {
+                String tag = TAGS[random.nextInt(TAGS.length)];
+                ObjectNode tagNode = tags.addObject();
+                tagNode.put("id", UUID.nameUUIDFromBytes(tag.getBytes(StandardCharsets.UTF_8)).toString());
+                tagNode.put("type", "tag");
+                tagNode.putObject("attributes").put("group", "genre").putObject("name").put("en", tag);
+            }
+            OffsetDateTime created = start.plusMinutes(i);
+            attributes.put("createdAt", created.toString());
+            attributes.put("updatedAt", created.plusDays(random.nextInt(365)).toString());
+
+            ArrayNode relationships = node.putArray("relationships");
+            relationships.addObject()
+                .put("id", authorIds.get(random.nextInt(authorIds.size())))
+                .put("type", "author");
+            ObjectNode cover = relationships.addObject();
+            cover.put("id", new UUID(seed, 2_000_000L + i).toString());
+            cover.put("type", "cover_art");
+            cover.putObject("attributes").put("fileName", "cover-" + i + ".jpg");
+
+            manga.add(node);
+        }
+        return new FakeMangadexServer(manga, authors);
+    }
+
+    /**
+     * Serve a dump recorded with mangadex.import.record-dir
+     */
+    public static FakeMangadexServer fromDump(Path dumpDirectory) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        List<ObjectNode> manga = new ArrayList<>();
+        try (var in = new GZIPInputStream(Files.newInputStream(
+                dumpDirectory.resolve(MangadexDumpWriter.MANGA_FILE)));
+             var lines = mapper.readerFor(ObjectNode.class).<ObjectNode>readValues(in)) {
+            while (lines.hasNextValue()) {
+                manga.add(lines.nextValue());
+            }
+        }
+        Map<String, String> authors;
+        try (MangadexDumpReader reader = MangadexDumpReader.open(dumpDirectory, mapper)) {
+            authors = new HashMap<>(reader.authors());
+        }
+        return new FakeMangadexServer(manga, authors);
+    }
+
+    // ========== fault injection ==========
+
+    public FakeMangadexServer latency(long millis, long jitterMillis) {
+        this.latencyMillis = millis;
+        this.latencyJitterMillis = jitterMillis;
+        return this;
+    }
+
+    /** Fraction of requests (0..1) answered with 429 and a Retry-After */
+    public FakeMangadexServer rateLimitRate(double rate) {
+        this.rateLimitRate = rate;
+        return this;
+    }
+
+    /** Fraction of requests (0..1) answered with 503 */
+    public FakeMangadexServer errorRate(double rate) {
+        this.errorRate = rate;
+        return this;
+    }
+
+    // ========== lifecycle ==========
+
+    public FakeMangadexServer start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "fake-mangadex");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.createContext("/manga", exchange -> handle(exchange, this::manga));
+        server.createContext("/author", exchange -> handle(exchange, this::author));
+        server.createContext("/covers/", exchange -> handle(exchange, this::cover));
+        server.start();
+        return this;
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public int size() { return manga.size(); }
+    public long getRequests() { return requests.get(); }
+    public long getRateLimited() { return rateLimited.get(); }
+    public long getErrors() { return errors.get(); }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    // ========== handlers ==========
+
+    private interface Handler {
+        void handle(HttpExchange exchange, Map<String, List<String>> query) throws IOException;
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            long delay = latencyMillis + (latencyJitterMillis > 0
+                ? ThreadLocalRandom.current().nextLong(latencyJitterMillis + 1) : 0);
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+
+            double roll = ThreadLocalRandom.current().nextDouble();
+            if (roll < rateLimitRate) {
+                rateLimited.incrementAndGet();
+                exchange.getResponseHeaders().add("X-RateLimit-Remaining", "0");
+                exchange.getResponseHeaders().add("Retry-After", "1");
+                sendJson(exchange, 429, "{\"result\":\"error\",\"errors\":[{\"status\":429}]}");
+                return;
+            }
+            if (roll < rateLimitRate + errorRate) {
+                errors.incrementAndGet();
+                sendJson(exchange, 503, "{\"result\":\"error\",\"errors\":[{\"status\":503}]}");
+                return;
+            }
+
+            handler.handle(exchange, parseQuery(exchange.getRequestURI().getRawQuery()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void manga(HttpExchange exchange, Map<String, List<String>> query) throws IOException {
+        int limit = Math.min(100, intParam(query, "limit", 10));
+        int offset = intParam(query, "offset", 0);
+
+        if (offset + limit > OFFSET_WINDOW) {
+            sendJson(exchange, 400, "{\"result\":\"error\",\"errors\":[{\"status\":400,\"detail\":\"offset + limit > 10000\"}]}");
+            return;
+        }
+
+        String orderField = query.containsKey("order[updatedAt]") ? "updatedAt" : "createdAt";
+        boolean descending = "desc".equals(first(query, "order[" + orderField + "]"));
+        String since = first(query, orderField + "Since");
+
+        // the *Since filter keeps the newest entries: a suffix ascending, a prefix descending
+        int older = since == null ? 0 : lowerBound(sortKeys.get(orderField), since);
+        List<ObjectNode> matching = descending
+            ? reversedBy.get(orderField).subList(0, manga.size() - older)
+            : sortedBy.get(orderField).subList(older, manga.size());
+
+        ObjectNode body = objectMapper.createObjectNode();
+        body.put("result", "ok");
+        body.put("response", "collection");
+        ArrayNode data = body.putArray("data");
+        for (int i = offset; i < Math.min(matching.size(), offset + limit); i++) {
+            data.add(matching.get(i));
+        }
+        body.put("limit", limit);
+        body.put("offset", offset);
+        body.put("total", matching.size());
+        exchange.getResponseHeaders().add("X-RateLimit-Remaining", "1000");
+        sendJson(exchange, 200, objectMapper.writeValueAsString(body));
+    }
+
+    private void author(HttpExchange exchange, Map<String, List<String>> query) throws IOException {
+        ObjectNode body = objectMapper.createObjectNode();
+        body.put("result", "ok");
+        ArrayNode data = body.putArray("data");
+        for (String id : query.getOrDefault("ids[]", List.of())) {
+            String name = authors.get(id);
+            if (name != null) {
+                ObjectNode author = data.addObject();
+                author.put("id", id);
+                author.put("type", "author");
+                author.putObject("attributes").put("name", name);
+            }
+        }
+        sendJson(exchange, 200, objectMapper.writeValueAsString(body));
+    }
+
+    private void cover(HttpExchange exchange, Map<String, List<String>> query) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "image/jpeg");
+        exchange.sendResponseHeaders(200, coverBytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(coverBytes);
+        }
+    }
+
+    // ========== helpers ==========
+
+    /**
+     * First index whose key is >= since (the *Since filters are inclusive)
+     */
+    private static int lowerBound(String[] keys, String since) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(since) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * The attribute in the offset-less UTC form the *Since parameters use, so they compare as strings
+     */
+    private static String instant(JsonNode node, String field) {
+        String raw = node.path("attributes").path(field).asText("");
+        try {
+            return OffsetDateTime.parse(raw).withOffsetSameInstant(ZoneOffset.UTC).toLocalDateTime().format(API_TIMESTAMP);
+        } catch (RuntimeException e) {
+            return raw;
+        }
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, List<String>> parseQuery(String rawQuery) {
+        Map<String, List<String>> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            query.computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+        }
+        return query;
+    }
+
+    private static String first(Map<String, List<String>> query, String key) {
+        List<String> values = query.get(key);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    private static int intParam(Map<String, List<String>> query, String key, int fallback) {
+        String value = first(query, key);
+        try {
+            return value != null ? Integer.parseInt(value) : fallback;
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
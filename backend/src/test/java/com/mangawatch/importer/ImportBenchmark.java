@@ -0,0 +1,136 @@
+package com.mangawatch.importer;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import com.mangawatch.importer.MangadexImporter.ImportResult;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Import throughput benchmark against {@link FakeMangadexServer} and a local database.
+ *
+ * Not part of the normal build. Run with a scratch Postgres (DB_HOST, DB_PORT, DB_NAME, DB_USER, DB_PASS):
+ *
+ *   mvn test -Pbenchmark
+ *   mvn test -Pbenchmark -Dbenchmark.manga=20000 -Dbenchmark.latency-ms=50 -Dbenchmark.rate-limit-rate=0.02
+ *   mvn test -Pbenchmark -Dbenchmark.shards=1     (single cursor, for comparison)
+ *
+ * Reports rows/sec and per-stage timings for a cold import (everything new) and a warm
+ * re-import (everything unchanged). Set -Dbenchmark.min-rows-per-second to fail the run
+ * when the cold import is slower than that.
+ */
+@Tag("benchmark")
+@SpringBootTest
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class ImportBenchmark {
+
+    private static final long SEED = 0x4d57;
+    // every generated dex id starts with this, so the benchmark only ever touches its own rows
+    private static final String ID_PREFIX = new UUID(SEED, 0).toString().substring(0, 19);
+
+    private static final int MANGA = Integer.getInteger("benchmark.manga", 5000);
+    private static final int SHARDS = Integer.getInteger("benchmark.shards", 4);
+    private static final double MIN_ROWS_PER_SECOND = Double.parseDouble(System.getProperty("benchmark.min-rows-per-second", "0"));
+
+    private static FakeMangadexServer server;
+
+    @Autowired
+    private MangadexImporter importer;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void mangadexProperties(DynamicPropertyRegistry registry) {
+        try {
+            server = FakeMangadexServer.generated(MANGA, SEED)
+                .latency(Long.getLong("benchmark.latency-ms", 20), Long.getLong("benchmark.latency-jitter-ms", 10))
+                .rateLimitRate(Double.parseDouble(System.getProperty("benchmark.rate-limit-rate", "0")))
+                .errorRate(Double.parseDouble(System.getProperty("benchmark.error-rate", "0")))
+                .start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        registry.add("mangadex.base-url", server::baseUrl);
+        registry.add("mangadex.uploads-url", server::baseUrl);
+        registry.add("mangadex.rate-limit.requests-per-second", () -> System.getProperty("benchmark.requests-per-second", "1000"));
+        registry.add("mangadex.rate-limit.burst", () -> 50);
+        registry.add("mangadex.rate-limit.backoff-base-ms", () -> 50);
+        registry.add("mangadex.import.shards", () -> SHARDS);
+        registry.add("mangadex.sync.enabled", () -> false);
+    }
+
+    @AfterAll
+    static void stopServer() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    @Order(1)
+    void coldImport() {
+        jdbcTemplate.update("DELETE FROM manga WHERE dex_id LIKE ?", ID_PREFIX + "%");
+        jdbcTemplate.update("DELETE FROM author WHERE dex_id LIKE ?", ID_PREFIX + "%");
+
+        ImportJob job = run("cold");
+
+        assertEquals(MANGA, job.getResult().getNewInserted() + job.getResult().getErrors(), "every manga inserted or reported");
+        if (SHARDS > 1) {
+            assertTrue(lastRunSegments() > 1, "a sharded import walks more than one segment");
+        }
+        if (MIN_ROWS_PER_SECOND > 0) {
+            assertTrue(job.getRowsPerSecond() >= MIN_ROWS_PER_SECOND,
+                String.format("cold import ran at %.1f rows/s, below the %.1f floor", job.getRowsPerSecond(), MIN_ROWS_PER_SECOND));
+        }
+    }
+
+    @Test
+    @Order(2)
+    void warmReimport() {
+        ImportJob job = run("warm");
+
+        assertEquals(MANGA, job.getResult().getSkipped() + job.getResult().getErrors(), "unchanged manga are skipped");
+    }
+
+    private ImportJob run(String label) {
+        long requestsBefore = server.getRequests();
+        ImportJob job = new ImportJob("benchmark-" + label);
+        ImportResult result = importer.importAllManga(job);
+        job.markFinished();
+
+        Map<String, Object> snapshot = job.snapshot();
+        System.out.printf("%n=== %s import of %d manga ===%n", label, MANGA);
+        System.out.printf("elapsed: %ss, rows/sec: %s, bottleneck: %s%n",
+            snapshot.get("elapsedSeconds"), snapshot.get("rowsPerSecond"), snapshot.get("bottleneck"));
+        System.out.printf("inserted: %d, updated: %d, skipped: %d, errors: %d%n",
+            result.getNewInserted(), result.getUpdated(), result.getSkipped(), result.getErrors());
+        System.out.printf("requests: %d (429s so far: %d, 5xx so far: %d)%n",
+            server.getRequests() - requestsBefore, server.getRateLimited(), server.getErrors());
+        System.out.printf("segments: %d over %d shards%n", lastRunSegments(), SHARDS);
+        System.out.printf("stages: %s%n%n", snapshot.get("stages"));
+        return job;
+    }
+
+    private int lastRunSegments() {
+        Integer segments = jdbcTemplate.queryForObject(
+            "SELECT count(*) FROM import_checkpoint WHERE run_id = (SELECT max(id) FROM import_run)", Integer.class);
+        return segments != null ? segments : 0;
+    }
+}
@@ -0,0 +1,209 @@
+package com.mangawatch.importer;
+
+import org.junit.jupiter.api.Test;
+
+import com.mangawatch.dto.MangadexResponse;
+import com.mangawatch.importer.MangadexImporter.CursorField;
+import com.mangawatch.importer.MangadexImporter.KeysetCursor;
+import com.mangawatch.importer.MangadexImporter.KeysetPage;
+import com.mangawatch.importer.MangadexImporter.Segment;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The createdAt walk without a server: how the timeline is cut into segments, how a page's
+ * items are sorted into new and already taken, and whole walks against a catalog whose order
+ * among manga sharing a second changes on every request, as MangaDex's does. No manga may be
+ * skipped, however the ties come back.
+ */
+class KeysetWalkTest {
+
+    private static final String DAY = "2020-01-01T00:00:";
+
+    @Test
+    void splitTimelineWithZeroSpanIsOneUnboundedSegment() {
+        List<Segment> segments = MangadexImporter.splitTimeline(DAY + "05", DAY + "05", 8);
+
+        assertEquals(1, segments.size());
+        assertNull(segments.get(0).from);
+        assertNull(segments.get(0).until);
+    }
+
+    @Test
+    void splitTimelineWithFewerSegmentsThanSeconds() {
+        List<Segment> segments = MangadexImporter.splitTimeline(DAY + "00", DAY + "10", 4);
+
+        assertEquals(List.of("null..02", "02..05", "05..07", "07..null"), ranges(segments));
+    }
+
+    @Test
+    void splitTimelineWithFewerSecondsThanSegments() {
+        // a segment can't be narrower than the one-second *Since granularity
+        List<Segment> segments = MangadexImporter.splitTimeline(DAY + "00", DAY + "03", 8);
+
+        assertEquals(List.of("null..01", "01..02", "02..null"), ranges(segments));
+    }
+
+    @Test
+    void pageContinuingATieSkipsWhatWasTakenAndMovesToTheLaterSecond() {
+        KeysetPage page = new KeysetPage(CursorField.CREATED_AT, DAY + "05", Set.of("a"), null, false);
+
+        assertFalse(page.accept(manga("a", "05")), "already taken at the cursor");
+        assertTrue(page.accept(manga("b", "05")));
+        assertTrue(page.accept(manga("c", "06")));
+        assertTrue(page.accept(manga("d", "06")));
+
+        assertEquals(3, page.accepted);
+        assertEquals(1, page.acceptedAtSince);
+        assertTrue(page.sawLater);
+        assertEquals(DAY + "06", page.nextSince());
+        assertEquals(Set.of("c", "d"), page.nextSeen());
+    }
+
+    @Test
+    void pageScanningACrowdedSecondOnlyTakesThatSecond() {
+        KeysetPage page = new KeysetPage(CursorField.CREATED_AT, DAY + "05", Set.of("a"), null, true);
+
+        assertFalse(page.accept(manga("a", "05")));
+        assertTrue(page.accept(manga("b", "05")));
+        assertFalse(page.accept(manga("c", "06")), "later manga wait until the scan is over");
+
+        assertEquals(1, page.acceptedAtSince);
+        assertTrue(page.sawLater);
+        assertEquals(DAY + "05", page.nextSince());
+        assertEquals(Set.of("a", "b"), page.nextSeen());
+    }
+
+    @Test
+    void pageStopsAtTheSegmentsUpperBound() {
+        KeysetPage page = new KeysetPage(CursorField.CREATED_AT, DAY + "05", Set.of(), DAY + "07", false);
+
+        assertTrue(page.accept(manga("a", "06")));
+        assertFalse(page.accept(manga("b", "07")));
+
+        assertTrue(page.passedUntil);
+        assertEquals(DAY + "06", page.nextSince());
+    }
+
+    @Test
+    void walkTakesEveryTieWhenSecondsFitInAPage() {
+        List<MangadexResponse.MangadexManga> catalog = catalog(3, 4, 2, 4, 1, 4, 3);
+        for (long seed = 0; seed < 50; seed++) {
+            assertEquals(ids(catalog), walk(catalog, null, null, 5, new Random(seed)), "seed " + seed);
+        }
+    }
+
+    @Test
+    void walkTakesEveryTieOfASecondCrowdedPastAPage() {
+        List<MangadexResponse.MangadexManga> catalog = catalog(2, 23, 5, 1, 11, 3);
+        for (long seed = 0; seed < 50; seed++) {
+            assertEquals(ids(catalog), walk(catalog, null, null, 5, new Random(seed)), "seed " + seed);
+        }
+    }
+
+    @Test
+    void segmentsTogetherTakeEveryMangaOnce() {
+        List<MangadexResponse.MangadexManga> catalog = catalog(4, 12, 1, 7, 7, 2, 9, 3);
+        List<Segment> segments = MangadexImporter.splitTimeline(DAY + "00", DAY + "07", 3);
+        for (long seed = 0; seed < 20; seed++) {
+            Random random = new Random(seed);
+            Set<String> taken = new HashSet<>();
+            for (Segment segment : segments) {
+                for (String id : walk(catalog, segment.from, segment.until, 4, random)) {
+                    assertTrue(taken.add(id), id + " taken by two segments");
+                }
+            }
+            assertEquals(ids(catalog), taken, "seed " + seed);
+        }
+    }
+
+    /**
+     * Walk one segment the way MangadexImporter.walkSegment does, asserting nothing is taken twice
+     */
+    private static Set<String> walk(List<MangadexResponse.MangadexManga> catalog, String from, String until,
+                                    int limit, Random random) {
+        KeysetCursor cursor = new KeysetCursor(CursorField.CREATED_AT, from, Set.of(), until);
+        Set<String> taken = new HashSet<>();
+        for (int requests = 0; requests < 1000; requests++) {
+            List<MangadexResponse.MangadexManga> page = serve(catalog, cursor.since, cursor.offset(), limit, random);
+            KeysetPage keyset = cursor.page();
+            for (MangadexResponse.MangadexManga manga : page) {
+                if (keyset.accept(manga)) {
+                    assertTrue(taken.add(manga.getId()), manga.getId() + " taken twice");
+                }
+            }
+            if (cursor.advance(keyset, page.size() >= limit, matching(catalog, cursor.since).size())) {
+                return taken;
+            }
+            if (cursor.needsLaterTotal()) {
+                cursor.laterTotal(matching(catalog, cursor.nextSecond()).size());
+            }
+        }
+        return fail("walk didn't finish");
+    }
+
+    // createdAt >= since ascending, in a new random order among equal seconds every time
+    private static List<MangadexResponse.MangadexManga> serve(List<MangadexResponse.MangadexManga> catalog,
+                                                              String since, int offset, int limit, Random random) {
+        List<MangadexResponse.MangadexManga> matching = matching(catalog, since);
+        Collections.shuffle(matching, random);
+        matching.sort(Comparator.comparing(KeysetWalkTest::createdAt));
+        return matching.subList(Math.min(offset, matching.size()), Math.min(offset + limit, matching.size()));
+    }
+
+    // createdAt >= since, what a page's total counts
+    private static List<MangadexResponse.MangadexManga> matching(List<MangadexResponse.MangadexManga> catalog,
+                                                                 String since) {
+        List<MangadexResponse.MangadexManga> matching = new ArrayList<>();
+        for (MangadexResponse.MangadexManga manga : catalog) {
+            if (since == null || MangadexImporter.toApiTimestamp(createdAt(manga)).compareTo(since) >= 0) {
+                matching.add(manga);
+            }
+        }
+        return matching;
+    }
+
+    // the given number of manga at each second from :00 on
+    private static List<MangadexResponse.MangadexManga> catalog(int... perSecond) {
+        List<MangadexResponse.MangadexManga> catalog = new ArrayList<>();
+        for (int second = 0; second < perSecond.length; second++) {
+            for (int i = 0; i < perSecond[second]; i++) {
+                catalog.add(manga(second + "-" + i, String.format("%02d", second)));
+            }
+        }
+        return catalog;
+    }
+
+    private static MangadexResponse.MangadexManga manga(String id, String second) {
+        MangadexResponse.MangadexAttributes attributes = new MangadexResponse.MangadexAttributes();
+        attributes.setCreatedAt(DAY + second + "+00:00");
+        MangadexResponse.MangadexManga manga = new MangadexResponse.MangadexManga();
+        manga.setId(id);
+        manga.setAttributes(attributes);
+        return manga;
+    }
+
+    private static String createdAt(MangadexResponse.MangadexManga manga) {
+        return manga.getAttributes().getCreatedAt();
+    }
+
+    private static Set<String> ids(List<MangadexResponse.MangadexManga> catalog) {
+        Set<String> ids = new HashSet<>();
+        catalog.forEach(manga -> ids.add(manga.getId()));
+        return ids;
+    }
+
+    private static List<String> ranges(List<Segment> segments) {
+        List<String> ranges = new ArrayList<>();
+        for (Segment segment : segments) {
+            ranges.add(seconds(segment.from) + ".." + seconds(segment.until));
+        }
+        return ranges;
+    }
+
+    private static String seconds(String timestamp) {
+        return timestamp != null ? timestamp.substring(DAY.length()) : "null";
+    }
+}
@@ -0,0 +1,132 @@
+package com.mangawatch.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Set operations checked against BitSet, for every pairing of chunk forms: sorted arrays
+ * (at most 4096 members per 65536), bitsets (more than that), chunks only one side has,
+ * and empty bitmaps.
+ */
+class BitmapTest {
+
+    private static final int CHUNK = 1 << 16;
+
+    // per chunk: empty, a few members, exactly the array limit, just past it, full
+    private static final List<int[]> SHAPES = List.of(
+        new int[] { 0, 0, 0 },
+        new int[] { 3, 100, 4096 },
+        new int[] { 4096, 0, 0 },
+        new int[] { 4097, 50000, 10 },
+        new int[] { CHUNK, CHUNK, 1 });
+
+    @Test
+    void andOrAndNotMatchBitSet() {
+        Random random = new Random(42);
+        for (int[] left : SHAPES) {
+            for (int[] right : SHAPES) {
+                BitSet a = random(left, random);
+                BitSet b = random(right, random);
+                Bitmap x = Bitmap.of(a.stream().toArray());
+                Bitmap y = Bitmap.of(b.stream().toArray());
+
+                BitSet and = (BitSet) a.clone();
+                and.and(b);
+                BitSet or = (BitSet) a.clone();
+                or.or(b);
+                BitSet andNot = (BitSet) a.clone();
+                andNot.andNot(b);
+
+                assertMembers(and, x.and(y));
+                assertMembers(or, x.or(y));
+                assertMembers(andNot, x.andNot(y));
+            }
+        }
+    }
+
+    @Test
+    void emptyBitmaps() {
+        Bitmap docs = Bitmap.of(new int[] { 1, 70000, 200000 });
+        assertMembers(new BitSet(), Bitmap.EMPTY.and(docs));
+        assertMembers(new BitSet(), docs.and(Bitmap.EMPTY));
+        assertArrayEquals(docs.toArray(), docs.or(Bitmap.EMPTY).toArray());
+        assertArrayEquals(docs.toArray(), Bitmap.EMPTY.or(docs).toArray());
+        assertArrayEquals(docs.toArray(), docs.andNot(Bitmap.EMPTY).toArray());
+        assertMembers(new BitSet(), Bitmap.EMPTY.andNot(docs));
+        assertMembers(new BitSet(), docs.andNot(docs));
+        assertTrue(Bitmap.of(new int[0]).isEmpty());
+        assertTrue(Bitmap.range(0).isEmpty());
+    }
+
+    @Test
+    void addAndRemoveMoveChunksBetweenForms() {
+        // an array chunk that grows into a bitset, and a bitset chunk that shrinks back into an array
+        int[] sparse = IntStream.range(0, 4000).map(i -> i * 3).toArray();
+        int[] extra = IntStream.range(0, 200).map(i -> i * 3 + 1).toArray();
+        Bitmap grown = Bitmap.of(sparse).add(extra);
+        BitSet expected = new BitSet();
+        IntStream.of(sparse).forEach(expected::set);
+        IntStream.of(extra).forEach(expected::set);
+        assertMembers(expected, grown);
+        assertTrue(grown.sizeInBytes() >= 8192, "more than 4096 members are kept as a bitset");
+
+        Bitmap shrunk = grown.remove(extra);
+        assertArrayEquals(sparse, shrunk.toArray());
+        assertEquals(sparse.length * 2L + 2, shrunk.sizeInBytes(), "4096 members or fewer are kept as an array");
+
+        // unsorted, repeated and already present documents; documents in a chunk of their own
+        Bitmap docs = Bitmap.of(new int[] { 5, 10 }).add(300000, 10, 7, 300000, 5);
+        assertArrayEquals(new int[] { 5, 7, 10, 300000 }, docs.toArray());
+        assertArrayEquals(new int[] { 5, 10 }, docs.remove(300000, 7, 99).toArray());
+        assertMembers(new BitSet(), docs.remove(docs.toArray()));
+
+        assertSame(docs, docs.add());
+        assertSame(docs, docs.remove());
+        assertTrue(Bitmap.EMPTY.remove(1).isEmpty());
+        assertArrayEquals(new int[] { 1 }, Bitmap.EMPTY.add(1).toArray());
+    }
+
+    @Test
+    void range() {
+        for (int size : new int[] { 1, 63, 64, 4096, 4097, CHUNK, CHUNK + 1, 3 * CHUNK + 4100 }) {
+            BitSet expected = new BitSet();
+            expected.set(0, size);
+            assertMembers(expected, Bitmap.range(size));
+        }
+    }
+
+    private static void assertMembers(BitSet expected, Bitmap actual) {
+        assertArrayEquals(expected.stream().toArray(), actual.toArray());
+        assertEquals(expected.cardinality(), actual.cardinality());
+        assertEquals(expected.isEmpty(), actual.isEmpty());
+    }
+
+    // per chunk, that many distinct random members
+    private static BitSet random(int[] counts, Random random) {
+        BitSet docs = new BitSet();
+        for (int chunk = 0; chunk < counts.length; chunk++) {
+            int base = chunk * CHUNK;
+            if (counts[chunk] == CHUNK) {
+                docs.set(base, base + CHUNK);
+                continue;
+            }
+            for (int added = 0; added < counts[chunk]; ) {
+                int doc = base + random.nextInt(CHUNK);
+                if (!docs.get(doc)) {
+                    docs.set(doc);
+                    added++;
+                }
+            }
+        }
+        return docs;
+    }
+}
@@ -0,0 +1,148 @@
+package com.mangawatch.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.mangawatch.repository.MangaKeyset;
+import com.mangawatch.repository.MangaRepository;
+import com.mangawatch.repository.MangaSearchCriteria;
+import com.mangawatch.repository.MangaSearchRepository;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The in-memory index and the SQL search must return the same ids in the same order, since
+ * /api/manga uses whichever is available. Runs a set of criteria and sorts through both over
+ * a fixture of awkward titles (case, punctuation, accents, CJK, chars past the surrogate
+ * range, null authors and years, duplicate titles) and compares the id lists.
+ *
+ * The fixture is tagged with its own genres and every search filters on one of them, so rows
+ * already in the database don't take part; the test transaction rolls it back.
+ */
+@SpringBootTest(properties = { "search.index.enabled=false", "mangadex.sync.enabled=false" })
+@Transactional
+class SearchParityTest {
+
+    private static final String FIXTURE = "Parity Fixture";
+    private static final String OTHER = "Parity Other";
+    private static final String EXCLUDED = "Parity Excluded";
+
+    private static final List<String> QUERIES = List.of(
+        "a", "al", "b", "-t", "x-", "ph", "é", "巨", "alpha", "ALPHA", "ray", "team", "ecole", "école",
+        "進撃", "ta b", "100%", "a_b", "\uE000");
+
+    private static final List<String> SORTS = List.of("title", "author", "release_year", MangaSearchRepository.SIMILARITY);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MangaRepository repo;
+
+    @Autowired
+    private CatalogDocumentLoader loader;
+
+    private CatalogSnapshot snapshot;
+    private final Map<Long, CatalogDocument> documents = new HashMap<>();
+
+    @BeforeEach
+    void buildFixture() {
+        insert("Alpha", "Kaito Ito", 2001, "ongoing", List.of("Alpha Gaiden"), FIXTURE);
+        insert("alpha", null, null, "completed", List.of(), FIXTURE, OTHER);
+        insert("ALPHA beta", "alphonse", 1999, "ongoing", List.of("Beta"), FIXTURE, OTHER);
+        insert("A-Team", "Bob", 2010, "hiatus", List.of("The A Team"), FIXTURE, EXCLUDED);
+        insert("x-ray Vision", "Alan Smithee", 1985, "ongoing", List.of(), FIXTURE);
+        insert("Émile et l'école", "Émile", 2005, "completed", List.of("Emile and the School"), FIXTURE, OTHER);
+        insert("ecole", "zed", 2005, "completed", List.of(), FIXTURE);
+        insert("進撃の巨人", "諫山創", 2009, "completed", List.of("Attack on Titan"), FIXTURE, OTHER);
+        insert("\uE000 Private", "𝔸 Author", 2020, "ongoing", List.of(), FIXTURE);
+        insert("𝔸 Double-struck", "\uE000 Author", 2021, "ongoing", List.of(), FIXTURE, EXCLUDED);
+        insert("Alpha", "kaito ito", 2001, "ongoing", List.of(), FIXTURE);
+        insert("100% Orange", "Ta Bi", null, null, List.of("a_b c"), FIXTURE);
+        insert("zeta", "Ōta", 1970, "hiatus", List.of("Alpha Zero"), FIXTURE, OTHER, EXCLUDED);
+
+        loader.loadAll(doc -> documents.put(doc.id(), doc));
+        snapshot = CatalogSnapshot.build(documents.values());
+    }
+
+    @Test
+    void pagesMatch() {
+        for (MangaSearchCriteria criteria : criteria()) {
+            for (String sort : SORTS) {
+                for (boolean descending : List.of(false, true)) {
+                    for (int page = 0; page < 3; page++) {
+                        PageRequest pageable = PageRequest.of(page, 5,
+                            Sort.by(descending ? Sort.Direction.DESC : Sort.Direction.ASC, sort));
+                        assertEquals(
+                            repo.searchIds(criteria, pageable).getContent(),
+                            snapshot.search(criteria, sort, descending, pageable).getContent(),
+                            criteria + " sorted by " + sort + (descending ? " desc" : " asc") + ", page " + page);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void keysetPagesMatch() {
+        for (MangaSearchCriteria criteria : criteria()) {
+            for (String sort : List.of("title", "author", "release_year")) {
+                for (boolean descending : List.of(false, true)) {
+                    MangaKeyset keyset = MangaKeyset.first(sort, descending);
+                    for (int page = 0; page < 10; page++) {
+                        List<Long> sql = repo.seekIds(criteria, keyset, 3);
+                        assertEquals(sql, snapshot.seek(criteria, keyset, 3),
+                            criteria + " seeking " + sort + (descending ? " desc" : " asc") + " after " + keyset);
+                        if (sql.isEmpty()) {
+                            break;
+                        }
+                        long last = sql.get(sql.size() - 1);
+                        keyset = new MangaKeyset(sort, descending, sortKey(documents.get(last), sort), last);
+                    }
+                }
+            }
+        }
+    }
+
+    private static List<MangaSearchCriteria> criteria() {
+        List<MangaSearchCriteria> all = new ArrayList<>();
+        List<String> queries = new ArrayList<>(QUERIES);
+        queries.add(null);
+        for (String query : queries) {
+            all.add(MangaSearchCriteria.of(query, null, List.of(FIXTURE)));
+            all.add(MangaSearchCriteria.of(query, "ongoing", List.of(FIXTURE)));
+            all.add(MangaSearchCriteria.of(query, null, List.of(FIXTURE, OTHER), true, List.of(EXCLUDED)));
+            all.add(MangaSearchCriteria.of(query, null, List.of(OTHER, EXCLUDED), false, null));
+        }
+        return all;
+    }
+
+    private static String sortKey(CatalogDocument doc, String sort) {
+        return switch (sort) {
+            case "author" -> doc.author();
+            case "release_year" -> doc.year() != null ? doc.year().toString() : null;
+            default -> doc.title();
+        };
+    }
+
+    private void insert(String title, String author, Integer year, String status, List<String> altTitles,
+                        String... genres) {
+        Long id = jdbcTemplate.queryForObject(
+            "INSERT INTO manga (dex_id, title, author, release_year, status) VALUES (?, ?, ?, ?, ?) RETURNING id",
+            Long.class, "parity-" + UUID.randomUUID(), title, author, year, status);
+        for (String alt : altTitles) {
+            jdbcTemplate.update("INSERT INTO manga_alt_titles (manga_id, alt_title) VALUES (?, ?)", id, alt);
+        }
+        for (String genre : genres) {
+            jdbcTemplate.update("INSERT INTO manga_genres (manga_id, genre) VALUES (?, ?)", id, genre);
+        }
+    }
+}